@@ -1,5 +1,6 @@
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.github.hdvtdev"
@@ -12,6 +13,10 @@ repositories {
 dependencies {
     implementation("com.google.code.gson:gson:2.11.0")
     implementation(files("libraries/com/github/hdvtdev/schliph/1.0.2/schliph-1.0.2.jar"))
+
+    testImplementation(platform("org.junit:junit-bom:5.11.3"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
 
@@ -22,3 +27,14 @@ java {
     }
 }
 
+tasks.test {
+    useJUnitPlatform()
+    systemProperty("hclilauncher.cache", temporaryDir.resolve("cache").absolutePath)
+}
+
+jmh {
+    jmhVersion = "1.37"
+    resultFormat = "JSON"
+    resultsFile = layout.buildDirectory.file("reports/jmh/results.json")
+}
+
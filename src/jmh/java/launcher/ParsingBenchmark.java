@@ -0,0 +1,191 @@
+package launcher;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a version JSON into a {@link VersionProfile}, from JSON and from its binary snapshot, and streaming
+ * the object hashes out of an asset index. The inputs are synthetic but shaped and sized like a modern
+ * release: about a hundred libraries, a few with natives, and a few thousand asset objects.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParsingBenchmark {
+
+    private static final int LIBRARIES = 100;
+    private static final int ASSET_OBJECTS = 4000;
+
+    private String versionJson;
+    private byte[] snapshot;
+    private Path directory;
+    private Path assetIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+
+        versionJson = versionJson(random).toString();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            VersionProfile.fromJson(JsonParser.parseString(versionJson).getAsJsonObject()).write(out);
+        }
+        snapshot = bytes.toByteArray();
+
+        directory = Files.createTempDirectory("parsing-benchmark");
+        assetIndex = directory.resolve("index.json");
+        Files.writeString(assetIndex, assetIndex(random).toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(assetIndex);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public VersionProfile versionFromJson() {
+        return VersionProfile.fromJson(JsonParser.parseString(versionJson).getAsJsonObject());
+    }
+
+    @Benchmark
+    public VersionProfile versionFromSnapshot() throws IOException {
+        return VersionProfile.read(new DataInputStream(new ByteArrayInputStream(snapshot)));
+    }
+
+    @Benchmark
+    public int assetIndex() throws IOException, InterruptedException {
+        int[] count = new int[1];
+        AssetIndexReader.read(assetIndex, hash -> count[0]++);
+        return count[0];
+    }
+
+    private static JsonObject versionJson(SplittableRandom random) {
+        JsonObject root = new JsonObject();
+        root.addProperty("id", "1.20.1");
+        root.addProperty("type", "release");
+        root.addProperty("mainClass", "net.minecraft.client.main.Main");
+        root.addProperty("assets", "5");
+
+        JsonObject assetIndex = new JsonObject();
+        assetIndex.addProperty("id", "5");
+        assetIndex.addProperty("url", "https://piston-meta.mojang.com/v1/packages/" + sha1(random) + "/5.json");
+        assetIndex.addProperty("sha1", sha1(random));
+        assetIndex.addProperty("size", 412_682);
+        root.add("assetIndex", assetIndex);
+
+        JsonObject downloads = new JsonObject();
+        downloads.add("client", download(random, null, 23_028_853));
+        root.add("downloads", downloads);
+
+        JsonArray libraries = new JsonArray();
+        for (int i = 0; i < LIBRARIES; i++) {
+            JsonObject library = new JsonObject();
+            String path = "org/example/lib" + i + "/1.0." + i + "/lib" + i + "-1.0." + i + ".jar";
+            library.addProperty("name", "org.example:lib" + i + ":1.0." + i + (i % 10 == 0 ? ":natives-linux" : ""));
+            JsonObject libraryDownloads = new JsonObject();
+            libraryDownloads.add("artifact", download(random, path, random.nextInt(10_000, 2_000_000)));
+            library.add("downloads", libraryDownloads);
+            if (i % 10 == 0) {
+                library.add("rules", rules("linux"));
+            }
+            libraries.add(library);
+        }
+        root.add("libraries", libraries);
+
+        JsonObject arguments = new JsonObject();
+        JsonArray game = new JsonArray();
+        for (String arg : new String[]{"--username", "${auth_player_name}", "--version", "${version_name}", "--gameDir", "${game_directory}",
+                "--assetsDir", "${assets_root}", "--assetIndex", "${assets_index_name}", "--uuid", "${auth_uuid}",
+                "--accessToken", "${auth_access_token}", "--userType", "${user_type}", "--versionType", "${version_type}"}) {
+            game.add(arg);
+        }
+        JsonArray jvm = new JsonArray();
+        JsonObject macArgument = new JsonObject();
+        macArgument.addProperty("value", "-XstartOnFirstThread");
+        macArgument.add("rules", rules("osx"));
+        jvm.add(macArgument);
+        for (String arg : new String[]{"-Djava.library.path=${natives_directory}", "-cp", "${classpath}"}) {
+            jvm.add(arg);
+        }
+        arguments.add("game", game);
+        arguments.add("jvm", jvm);
+        root.add("arguments", arguments);
+
+        JsonObject javaVersion = new JsonObject();
+        javaVersion.addProperty("component", "java-runtime-gamma");
+        javaVersion.addProperty("majorVersion", 17);
+        root.add("javaVersion", javaVersion);
+        return root;
+    }
+
+    private static JsonObject assetIndex(SplittableRandom random) {
+        JsonObject objects = new JsonObject();
+        for (int i = 0; i < ASSET_OBJECTS; i++) {
+            JsonObject object = new JsonObject();
+            object.addProperty("hash", sha1(random));
+            object.addProperty("size", random.nextInt(100, 100_000));
+            objects.add("minecraft/sounds/benchmark/object" + i + ".ogg", object);
+        }
+        JsonObject root = new JsonObject();
+        root.add("objects", objects);
+        return root;
+    }
+
+    private static JsonObject download(SplittableRandom random, String path, long size) {
+        JsonObject download = new JsonObject();
+        if (path != null) {
+            download.addProperty("path", path);
+        }
+        String sha1 = sha1(random);
+        download.addProperty("sha1", sha1);
+        download.addProperty("size", size);
+        download.addProperty("url", path != null ? "https://libraries.minecraft.net/" + path : "https://piston-data.mojang.com/v1/objects/" + sha1 + "/client.jar");
+        return download;
+    }
+
+    private static JsonArray rules(String osName) {
+        JsonObject os = new JsonObject();
+        os.addProperty("name", osName);
+        JsonObject rule = new JsonObject();
+        rule.addProperty("action", "allow");
+        rule.add("os", os);
+        JsonArray rules = new JsonArray();
+        rules.add(rule);
+        return rules;
+    }
+
+    private static String sha1(SplittableRandom random) {
+        byte[] bytes = new byte[20];
+        random.nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+
+}
@@ -0,0 +1,54 @@
+package logging;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a caller pays for {@link SimpleLogger} with several threads logging at once: an enabled record,
+ * which is enqueued for the writer thread, and a disabled one. The console is replaced by a null stream
+ * before the writer is created, so the numbers do not depend on the terminal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class LoggerBenchmark {
+
+    static {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    private final SimpleLogger logger = new SimpleLogger(true);
+
+    @Setup
+    public void setUp() {
+        SimpleLogger.setLevel(Level.INFO);
+    }
+
+    @Benchmark
+    public void enabled() {
+        logger.info("Downloaded libraries/org/example/lib/1.0/lib-1.0.jar");
+    }
+
+    @Benchmark
+    public void disabled() {
+        logger.debug(() -> "Downloaded libraries/org/example/lib/1.0/lib-1.0.jar");
+    }
+
+}
@@ -0,0 +1,147 @@
+package network;
+
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DownloadManager#downloadFiles} of a synthetic tree served from memory by a local HTTP server: many
+ * small files like {@code assets/objects}, or fewer large ones like {@code libraries}. Every invocation
+ * starts from an empty destination, with the shared object store and peers turned off. The verification
+ * index and download journal live in a temporary cache that is deleted after the trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DownloadBenchmark {
+
+    @Param({"assets", "libraries"})
+    public String tree;
+
+    private HttpServer server;
+    private Map<URI, String> files;
+    private Path destination;
+    private Path cache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, NoSuchAlgorithmException {
+        // read once when DownloadManager is initialized, which happens below in this fork
+        cache = Files.createTempDirectory("download-benchmark-cache");
+        System.setProperty("hclilauncher.cache", cache.toString());
+        DownloadManager.setObjectStore(null);
+        DownloadManager.setPeers(List.of());
+
+        Map<String, byte[]> content = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(42);
+        MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
+        Map<String, String> hashes = new HashMap<>();
+
+        boolean assets = tree.equals("assets");
+        int count = assets ? 2000 : 100;
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[assets ? random.nextInt(1024, 16 * 1024) : random.nextInt(64 * 1024, 2 * 1024 * 1024)];
+            random.nextBytes(bytes);
+            String sha1 = HexFormat.of().formatHex(messageDigest.digest(bytes));
+            String path = assets ? "/" + sha1.substring(0, 2) + "/" + sha1 : "/org/example/lib" + i + "/1.0/lib" + i + "-1.0.jar";
+            content.put(path, bytes);
+            hashes.put(path, sha1);
+        }
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", exchange -> {
+            byte[] bytes = content.get(exchange.getRequestURI().getPath());
+            if (bytes == null) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(bytes);
+            }
+        });
+        server.start();
+
+        String base = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+        files = new HashMap<>();
+        hashes.forEach((path, sha1) -> files.put(URI.create(base + path), sha1));
+    }
+
+    @Setup(Level.Invocation)
+    public void createDestination() throws IOException {
+        destination = Files.createTempDirectory("download-benchmark");
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteDestination() throws IOException {
+        delete(destination);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.stop(0);
+        DownloadManager.flush();
+        delete(cache);
+    }
+
+    private static void delete(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+                Files.delete(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Benchmark
+    public boolean downloadFiles() {
+        if (!DownloadManager.downloadFiles(files, destination, true)) {
+            throw new UncheckedIOException(new IOException("Benchmark download failed"));
+        }
+        return true;
+    }
+
+}
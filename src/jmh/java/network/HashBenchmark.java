@@ -0,0 +1,75 @@
+package network;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DownloadManager#checkFileHash} on files the size of an asset, a library and a client jar, either
+ * hashed in full ({@code deep}) or answered from the verification index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashBenchmark {
+
+    @Param({"4096", "1048576", "33554432"})
+    public int size;
+
+    @Param({"true", "false"})
+    public boolean deep;
+
+    private Path directory;
+    private Path file;
+    private String sha1;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, NoSuchAlgorithmException {
+        directory = Files.createTempDirectory("hash-benchmark");
+        file = directory.resolve("file.bin");
+
+        byte[] content = new byte[size];
+        new SplittableRandom(size).nextBytes(content);
+        Files.write(file, content);
+        sha1 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(content));
+
+        DownloadManager.setDeepVerify(deep);
+        if (!DownloadManager.checkFileHash(file, sha1)) {
+            throw new IllegalStateException("Hash of the benchmark file does not match");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public boolean checkFileHash() {
+        return DownloadManager.checkFileHash(file, sha1);
+    }
+
+}
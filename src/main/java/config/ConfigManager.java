@@ -2,46 +2,87 @@ package config;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
 import logging.SimpleLogger;
 
 import java.io.*;
-import java.nio.file.CopyOption;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.util.Arrays;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
-
-public class ConfigManager {
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the config file in memory as an immutable snapshot, so reads never touch the disk or take a lock.
+ * Writes replace the snapshot and are saved by a background thread after a short delay, coalescing bursts
+ * of changes into one write of a temp file that is then renamed over the config. Edits made to the file by
+ * anything else are picked up through a {@link WatchService}.
+ */
+public final class ConfigManager implements Closeable {
+
+    private static final long WRITE_DELAY_MILLIS = 200;
+    private static final ScheduledExecutorService writeThread = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("HCLILauncher-config-writer").daemon().factory());
 
     private final Path pathToConfig;
     private final SimpleLogger logger = new SimpleLogger(true);
     private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
+    private volatile Map<String, JsonElement> properties;
+    private final Set<String> unsaved = new HashSet<>();
+    private ScheduledFuture<?> pendingWrite;
+    private String lastWritten;
+    private WatchService watchService;
+    private final Thread shutdownHook = new Thread(this::flush);
+
     public ConfigManager(Path pathToConfig) {
-        this.pathToConfig = pathToConfig;
+        this.pathToConfig = pathToConfig.toAbsolutePath();
+        this.properties = read(readFile());
+        watch();
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
     }
 
     public void setProperty(String property, String value) {
-        try (FileWriter fileWriter = new FileWriter(pathToConfig.toFile())) {
-            fileWriter.write(gson.toJson(Map.of(property, value)));
-        } catch (IOException e) {
-            logger.error(e);
+        synchronized (this) {
+            Map<String, JsonElement> updated = new LinkedHashMap<>(properties);
+            updated.put(property, new JsonPrimitive(value));
+            properties = Collections.unmodifiableMap(updated);
+            unsaved.add(property);
+            if (pendingWrite == null) {
+                pendingWrite = writeThread.schedule(this::flush, WRITE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
         }
     }
 
     public String getProperty(String property) {
-        try (FileReader fileReader = new FileReader(pathToConfig.toFile())) {
-            JsonObject root = gson.fromJson(fileReader, JsonObject.class);
-            return root.get(property).getAsString();
-        } catch (IOException e) {
-            logger.error(e);
+        JsonElement value = properties.get(property);
+        if (value != null && !value.isJsonNull()) {
+            return value.isJsonPrimitive() ? value.getAsString() : value.toString();
         }
         logger.warn("Property " + property + " does not exist in file " + pathToConfig);
         return "property does not exist";
     }
 
+    /**
+     * Copies the bundled {@code configName} resource over the managed config file and reloads it.
+     */
     public void createDefaultConfig(String configName) {
 
         configName = configName.startsWith("/") ? configName : "/" + configName;
@@ -51,18 +92,142 @@ public class ConfigManager {
                 logger.error(new FileNotFoundException(configName + " does not exist"));
                 return;
             }
-            File file = new File(Path.of(System.getProperty("user.dir")).resolve(configName).toString());
-            Files.copy(inputStream, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.createDirectories(pathToConfig.getParent());
+            Files.copy(inputStream, pathToConfig, StandardCopyOption.REPLACE_EXISTING);
         } catch (IOException e) {
             logger.error(e);
         }
 
+        reload();
     }
 
+    /**
+     * Writes any unsaved changes now.
+     */
+    public void flush() {
+        String json;
+        synchronized (this) {
+            if (pendingWrite != null) {
+                pendingWrite.cancel(false);
+                pendingWrite = null;
+            }
+            if (unsaved.isEmpty()) {
+                return;
+            }
+            JsonObject root = new JsonObject();
+            properties.forEach(root::add);
+            json = gson.toJson(root);
+            lastWritten = json;
+            unsaved.clear();
+        }
 
+        Path tempPath = pathToConfig.resolveSibling(pathToConfig.getFileName() + ".part");
+        try {
+            Files.createDirectories(pathToConfig.getParent());
+            Files.writeString(tempPath, json);
+            try {
+                Files.move(tempPath, pathToConfig, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, pathToConfig, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.error(e);
+        }
+    }
 
+    @Override
+    public void close() {
+        flush();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // already shutting down, the hook runs anyway
+        }
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.error(e);
+            }
+        }
+    }
 
+    /**
+     * Replaces the snapshot with the file's content, keeping values set here that were not saved yet. Our
+     * own writes are recognized and skipped.
+     */
+    private void reload() {
+        String json = readFile();
+        synchronized (this) {
+            if (json == null || json.equals(lastWritten)) {
+                return;
+            }
+            Map<String, JsonElement> updated = new LinkedHashMap<>(read(json));
+            for (String property : unsaved) {
+                updated.put(property, properties.get(property));
+            }
+            properties = Collections.unmodifiableMap(updated);
+        }
+        logger.info("Reloaded " + pathToConfig);
+    }
 
+    private String readFile() {
+        try {
+            return Files.readString(pathToConfig);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.error(e);
+            return null;
+        }
+    }
 
+    private Map<String, JsonElement> read(String json) {
+        if (json == null || json.isBlank()) {
+            return Map.of();
+        }
+        try {
+            JsonObject root = gson.fromJson(json, JsonObject.class);
+            if (root == null) {
+                return Map.of();
+            }
+            Map<String, JsonElement> read = new LinkedHashMap<>();
+            root.entrySet().forEach(entry -> read.put(entry.getKey(), entry.getValue()));
+            return Collections.unmodifiableMap(read);
+        } catch (JsonParseException | IllegalStateException e) {
+            logger.warn("Could not parse " + pathToConfig + ", keeping the previous values: " + e.getMessage());
+            return properties != null ? properties : Map.of();
+        }
+    }
+
+    private void watch() {
+        Path directory = pathToConfig.getParent();
+        try {
+            Files.createDirectories(directory);
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            logger.warn("Cannot watch " + pathToConfig + " for changes: " + e.getMessage());
+            return;
+        }
+
+        Thread.ofVirtual().name("config-watcher").start(() -> {
+            try {
+                while (true) {
+                    WatchKey key = watchService.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        changed |= event.context() instanceof Path name && name.equals(pathToConfig.getFileName());
+                    }
+                    key.reset();
+                    if (changed) {
+                        reload();
+                    }
+                }
+            } catch (ClosedWatchServiceException | InterruptedException e) {
+                // closed
+            }
+        });
+    }
 
 }
@@ -0,0 +1,307 @@
+package launcher;
+
+import logging.SimpleLogger;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+/**
+ * Mark and sweep for {@code libraries}, {@code assets/objects} and the shared object store: everything
+ * referenced by an installed version JSON or its asset index is kept, everything else is deleted or, in a
+ * dry run, only reported.
+ * <p>
+ * It is safe to run next to a download: part files and anything modified within {@code MIN_AGE} are never
+ * touched, and right before each file is deleted the version JSONs and asset indexes are checked again and
+ * re-marked if any changed, so files of a version installed meanwhile survive even when they were linked in
+ * from the shared store with an old modification time. Emptied directories are left in place, since a
+ * running download may be about to write into them.
+ * <p>
+ * An object in the shared store is deleted once no game directory links to it any more and no version here
+ * references it; an object still linked from another game directory is kept, since deleting it would free
+ * nothing. Reported bytes count a file only when its last link goes.
+ */
+public final class ArtifactCollector {
+
+    public record Result(long files, long bytes, boolean dryRun) {}
+
+    private record Marks(Set<Path> libraries, Set<Path> objects, Set<String> hashes) {
+
+        boolean contains(Path file) {
+            return libraries.contains(file) || objects.contains(file);
+        }
+    }
+
+    /**
+     * A file that may be deleted. {@code fileKey} identifies its inode and {@code links} is its hard link
+     * count; they are null and -1 where the platform does not report them.
+     */
+    private record Candidate(Path file, long size, Object fileKey, int links) {}
+
+    private static final SimpleLogger logger = new SimpleLogger(true);
+    private static final Duration MIN_AGE = Duration.ofHours(1);
+
+    private ArtifactCollector() {}
+
+    /**
+     * {@code store} is the root of the shared object store, or null when there is none.
+     */
+    public static Result collect(Path versions, Path libraries, Path indexes, Path objects, Path store, boolean dryRun) throws IOException {
+
+        Marking marking = new Marking(versions, libraries, indexes, objects);
+        Marks marks = marking.current();
+        long cutoff = System.currentTimeMillis() - MIN_AGE.toMillis();
+
+        Map<Path, Candidate> candidates = new ConcurrentHashMap<>();
+        Map<Path, Candidate> stored = new ConcurrentHashMap<>();
+        List<Future<?>> sweeps = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Path root : List.of(libraries, objects)) {
+                Set<Path> marked = root == libraries ? marks.libraries() : marks.objects();
+                for (Path subtree : children(root)) {
+                    sweeps.add(executor.submit(() -> {
+                        sweep(subtree, file -> !marked.contains(file), cutoff, candidates);
+                        return null;
+                    }));
+                }
+            }
+            if (store != null) {
+                for (Path subtree : children(store)) {
+                    sweeps.add(executor.submit(() -> {
+                        sweep(subtree, file -> !marks.hashes().contains(file.getFileName().toString()), cutoff, stored);
+                        return null;
+                    }));
+                }
+            }
+            for (Future<?> sweep : sweeps) {
+                sweep.get();
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+
+        // links left per inode once the files deleted so far are gone
+        Map<Object, Integer> remaining = new HashMap<>();
+        long files = 0;
+        long bytes = 0;
+
+        for (Candidate candidate : candidates.values()) {
+            if (marking.current().contains(candidate.file()) || !delete(candidate.file(), dryRun)) {
+                continue;
+            }
+            files++;
+            bytes += unlink(candidate, remaining);
+        }
+
+        // game directory links are gone now, so a store object nobody else links to is down to one link
+        for (Candidate candidate : stored.values()) {
+            if (marking.current().hashes().contains(candidate.file().getFileName().toString())) {
+                continue;
+            }
+            int links = dryRun ? remaining.getOrDefault(candidate.fileKey(), candidate.links()) : links(candidate.file());
+            if (candidate.fileKey() == null || links != 1 || !delete(candidate.file(), dryRun)) {
+                continue;
+            }
+            files++;
+            bytes += candidate.size();
+        }
+
+        return new Result(files, bytes, dryRun);
+    }
+
+    /**
+     * Marks of the installed versions, taken again whenever a version JSON or asset index was added, changed
+     * or removed since the last time.
+     */
+    private static final class Marking {
+
+        private final Path versions;
+        private final Path libraries;
+        private final Path indexes;
+        private final Path objects;
+        private List<String> fingerprint;
+        private Marks marks;
+
+        private Marking(Path versions, Path libraries, Path indexes, Path objects) {
+            this.versions = versions;
+            this.libraries = libraries;
+            this.indexes = indexes;
+            this.objects = objects;
+        }
+
+        private Marks current() throws IOException {
+            List<String> now = fingerprint();
+            if (!now.equals(fingerprint)) {
+                marks = mark(versions, libraries, indexes, objects);
+                fingerprint = now;
+            }
+            return marks;
+        }
+
+        private List<String> fingerprint() throws IOException {
+            List<Path> files = new ArrayList<>(children(indexes));
+            for (Path versionDirectory : children(versions)) {
+                files.add(versionDirectory.resolve(versionDirectory.getFileName() + ".json"));
+            }
+
+            List<String> fingerprint = new ArrayList<>(files.size());
+            for (Path file : files) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    fingerprint.add(file + ":" + attributes.size() + ":" + attributes.lastModifiedTime().toMillis());
+                } catch (NoSuchFileException e) {
+                    // a version directory without its JSON yet
+                }
+            }
+            return fingerprint;
+        }
+    }
+
+    /**
+     * Collects every library and asset object referenced by {@code versions/<id>/<id>.json}. Fails rather
+     * than under-marking when a version JSON or a referenced asset index cannot be read.
+     */
+    private static Marks mark(Path versions, Path libraries, Path indexes, Path objects) throws IOException {
+
+        Set<Path> markedLibraries = new HashSet<>();
+        Set<Path> markedObjects = new HashSet<>();
+        Set<String> hashes = new HashSet<>();
+        Set<String> assetIndexes = new HashSet<>();
+
+        for (Path versionDirectory : children(versions)) {
+            Path versionJson = versionDirectory.resolve(versionDirectory.getFileName() + ".json");
+            if (!Files.isRegularFile(versionJson)) {
+                continue;
+            }
+
+            VersionProfile profile = VersionProfileCache.load(versionJson);
+            for (VersionProfile.Library library : profile.libraries()) {
+                List<VersionProfile.Download> downloads = new ArrayList<>(library.classifiers().values());
+                if (library.artifact() != null) {
+                    downloads.add(library.artifact());
+                }
+                for (VersionProfile.Download download : downloads) {
+                    if (download.url() != null) {
+                        markedLibraries.add(libraries.resolve(URI.create(download.url()).getPath().substring(1)));
+                    }
+                    if (download.path() != null) {
+                        markedLibraries.add(libraries.resolve(download.path()));
+                    }
+                    if (download.sha1() != null) {
+                        hashes.add(download.sha1().toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+            if (profile.assets() != null) {
+                assetIndexes.add(profile.assets());
+            }
+        }
+
+        for (String assetIndex : assetIndexes) {
+            Path indexPath = indexes.resolve(assetIndex + ".json");
+            if (!Files.isRegularFile(indexPath)) {
+                throw new IOException("Asset index " + indexPath + " is missing, cannot tell which objects are used");
+            }
+            try {
+                AssetIndexReader.read(indexPath, hash -> {
+                    markedObjects.add(objects.resolve(hash.substring(0, 2)).resolve(hash));
+                    hashes.add(hash);
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+
+        return new Marks(markedLibraries, markedObjects, hashes);
+    }
+
+    private static void sweep(Path subtree, Predicate<Path> unused, long cutoff, Map<Path, Candidate> candidates) throws IOException {
+        Files.walkFileTree(subtree, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile() && !file.getFileName().toString().endsWith(".part")
+                        && attributes.lastModifiedTime().toMillis() < cutoff && unused.test(file)) {
+                    candidates.put(file, new Candidate(file, attributes.size(), attributes.fileKey(), links(file)));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static boolean delete(Path file, boolean dryRun) {
+        if (dryRun) {
+            logger.info("Unused: " + file);
+            return true;
+        }
+        try {
+            if (!Files.deleteIfExists(file)) {
+                return false;
+            }
+        } catch (IOException e) {
+            logger.error(e);
+            return false;
+        }
+        logger.debug(() -> "Deleted " + file);
+        return true;
+    }
+
+    /**
+     * Returns the bytes freed by removing this link, which is all of them only if it was the last one.
+     */
+    private static long unlink(Candidate candidate, Map<Object, Integer> remaining) {
+        if (candidate.fileKey() == null || candidate.links() < 0) {
+            return candidate.links() > 1 ? 0 : candidate.size();
+        }
+        int left = remaining.getOrDefault(candidate.fileKey(), candidate.links()) - 1;
+        remaining.put(candidate.fileKey(), left);
+        return left <= 0 ? candidate.size() : 0;
+    }
+
+    private static int links(Path file) {
+        try {
+            return (Integer) Files.getAttribute(file, "unix:nlink");
+        } catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+            return -1;
+        }
+    }
+
+    private static List<Path> children(Path directory) throws IOException {
+        List<Path> children = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            entries.forEach(children::add);
+        } catch (NoSuchFileException e) {
+            return List.of();
+        }
+        return children;
+    }
+
+}
@@ -0,0 +1,85 @@
+package launcher;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+public final class AssetIndexReader {
+
+    @FunctionalInterface
+    public interface HashConsumer {
+        void accept(String hash) throws InterruptedException;
+    }
+
+    private AssetIndexReader() {}
+
+    /**
+     * Streams the {@code objects} of an asset index and hands every distinct object hash to {@code consumer}
+     * as soon as it is read, without building a tree of the whole index.
+     */
+    public static void read(Path indexPath, HashConsumer consumer) throws IOException, InterruptedException {
+
+        Set<String> seen = new HashSet<>();
+
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(indexPath))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("objects")) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    reader.nextName();
+                    String hash = null;
+
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals("hash")) {
+                            hash = reader.nextString();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+
+                    if (hash != null && seen.add(hash)) {
+                        consumer.accept(hash);
+                    }
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+        }
+    }
+
+    /**
+     * Parses the index on {@code executor} and puts a download entry for every object into {@code queue},
+     * blocking while the queue is full. The returned future completes once the whole index was read.
+     */
+    public static CompletableFuture<Void> feed(Path indexPath, String resourcesBase, BlockingQueue<Map.Entry<URI, String>> queue, Executor executor) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                read(indexPath, hash -> queue.put(Map.entry(URI.create(resourcesBase + hash.substring(0, 2) + "/" + hash), hash)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+}
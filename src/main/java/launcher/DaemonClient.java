@@ -0,0 +1,62 @@
+package launcher;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Thin client for {@link LauncherDaemon}. It only touches the socket and the console, so a call does not
+ * pay for the HTTP client, Gson or the download machinery.
+ */
+public final class DaemonClient {
+
+    private DaemonClient() {}
+
+    /**
+     * Sends {@code command}, prints the progress the daemon streams back and returns the process exit code:
+     * 0 on success, 1 when the command failed and 2 when no daemon is listening.
+     */
+    public static int send(Path socketPath, String command) {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+            PrintWriter out = new PrintWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), true);
+            out.println(command);
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("> ")) {
+                    System.out.println(line.substring(2));
+                } else if (line.startsWith("+ ")) {
+                    System.out.println(line.substring(2));
+                    return 0;
+                } else if (line.startsWith("! ")) {
+                    System.err.println(line.substring(2));
+                    return 1;
+                }
+            }
+            System.err.println("The daemon closed the connection without an answer.");
+            return 1;
+        } catch (IOException e) {
+            System.err.println("No launcher daemon on " + socketPath + ": " + e.getMessage());
+            return 2;
+        }
+    }
+
+    static boolean isRunning(Path socketPath) {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+}
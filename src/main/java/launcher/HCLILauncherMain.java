@@ -1,11 +1,25 @@
 package launcher;
 
+import logging.Level;
+import logging.SimpleLogger;
+import network.DownloadManager;
+import network.ObjectStore;
+import network.PeerServer;
 import schliph.CommandLineParser;
 
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Hashtable;
+import java.util.Locale;
 
 public class HCLILauncherMain {
 
+    private static final SimpleLogger logger = new SimpleLogger(true);
+    private static final long LOG_FILE_MAX_BYTES = 10L * 1024 * 1024;
+    private static final int LOG_FILE_COUNT = 5;
+
     public static Hashtable<String, Object> args = new Hashtable<>();
 
     public static void main(String[] args) {
@@ -14,6 +28,85 @@ public class HCLILauncherMain {
 
             //TODO: жестко запарсить аргументы
 
+            Path socketPath = commandLineParser.get("--socket") instanceof String socket ? Path.of(socket) : LauncherDaemon.DEFAULT_SOCKET;
+            if (commandLineParser.get("--send") instanceof String command) {
+                System.exit(DaemonClient.send(socketPath, command));
+            }
+
+            if (commandLineParser.get("--log-level") instanceof String level) {
+                try {
+                    SimpleLogger.setLevel(Level.valueOf(level.trim().toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    logger.error("--log-level expects one of " + Arrays.toString(Level.values()) + ", got \"" + level + "\".");
+                    return;
+                }
+            }
+
+            if (commandLineParser.get("--log-file") instanceof String logFile) {
+                try {
+                    SimpleLogger.setLogFile(Path.of(logFile), LOG_FILE_MAX_BYTES, LOG_FILE_COUNT);
+                } catch (IOException e) {
+                    logger.error(e);
+                }
+            }
+
+            DownloadManager.setDeepVerify(commandLineParser.contains("--deep-verify"));
+
+            if (commandLineParser.get("--max-bandwidth") instanceof String kibPerSecond) {
+                long bytesPerSecond;
+                try {
+                    bytesPerSecond = Math.multiplyExact(Long.parseLong(kibPerSecond.trim()), 1024);
+                } catch (NumberFormatException | ArithmeticException e) {
+                    bytesPerSecond = 0;
+                }
+                if (bytesPerSecond <= 0) {
+                    logger.error("--max-bandwidth expects a positive whole number of KiB/s, got \"" + kibPerSecond + "\".");
+                    return;
+                }
+                DownloadManager.setBandwidthLimit(bytesPerSecond);
+            }
+
+            if (commandLineParser.get("--asset-mirrors") instanceof String mirrors) {
+                MinecraftManager.setAssetMirrors(Arrays.asList(mirrors.split(",")));
+            }
+
+            if (commandLineParser.get("--library-mirrors") instanceof String mirrors) {
+                MinecraftManager.setLibraryMirrors(Arrays.asList(mirrors.split(",")));
+            }
+
+            if (commandLineParser.get("--store") instanceof String store) {
+                DownloadManager.setObjectStore(new ObjectStore(Path.of(store)));
+            } else if (commandLineParser.contains("--no-store")) {
+                DownloadManager.setObjectStore(null);
+            }
+
+            if (commandLineParser.get("--peers") instanceof String peers) {
+                DownloadManager.setPeers(Arrays.stream(peers.split(",")).map(URI::create).toList());
+            }
+
+            if (commandLineParser.contains("--gc")) {
+                MinecraftManager.collectGarbage(commandLineParser.contains("--dry-run"));
+            }
+
+            if (commandLineParser.contains("--serve")) {
+                int port = PeerServer.DEFAULT_PORT;
+                if (commandLineParser.get("--serve") instanceof String value) {
+                    try {
+                        port = Integer.parseInt(value.trim());
+                    } catch (NumberFormatException e) {
+                        port = -1;
+                    }
+                    if (port < 0 || port > 65535) {
+                        logger.error("--serve expects a port between 0 and 65535, got \"" + value + "\".");
+                        return;
+                    }
+                }
+                serve(port);
+            }
+
+            if (commandLineParser.contains("--daemon")) {
+                daemon(socketPath);
+            }
 
 
         }
@@ -23,6 +116,27 @@ public class HCLILauncherMain {
 
     }
 
+    private static void daemon(Path socketPath) {
+        try (LauncherDaemon launcherDaemon = new LauncherDaemon(socketPath)) {
+            launcherDaemon.serve();
+        } catch (IOException e) {
+            logger.error(e);
+        }
+    }
+
+    private static void serve(int port) {
+        ObjectStore objectStore = DownloadManager.getObjectStore();
+        if (objectStore == null) {
+            logger.error("Serve mode needs the shared object store, it cannot be combined with --no-store.");
+            return;
+        }
+        try (PeerServer peerServer = new PeerServer(objectStore, port)) {
+            peerServer.serve();
+        } catch (IOException e) {
+            logger.error(e);
+        }
+    }
+
 
 
 }
@@ -0,0 +1,354 @@
+package launcher;
+
+import logging.SimpleLogger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs any number of game instances side by side. Each instance's stdout and stderr are drained by virtual
+ * threads into a bounded buffer of its most recent lines, each cut off at a fixed length, so a chatty client
+ * never blocks on a full pipe and never grows the launcher's memory. An instance that exits with a non-zero code is restarted with
+ * exponential backoff until its {@link RestartPolicy} gives up.
+ */
+public final class InstanceSupervisor implements AutoCloseable {
+
+    public enum State { RUNNING, BACKING_OFF, EXITED, STOPPED, CRASHED }
+
+    /**
+     * Restart at most {@code maxRestarts} times in a row, waiting {@code initialDelay} doubled per attempt up
+     * to {@code maxDelay}. A run that lasted {@code stableAfter} resets the count.
+     */
+    public record RestartPolicy(int maxRestarts, Duration initialDelay, Duration maxDelay, Duration stableAfter) {
+
+        public static final RestartPolicy NEVER = new RestartPolicy(0, Duration.ZERO, Duration.ZERO, Duration.ZERO);
+        public static final RestartPolicy DEFAULT = new RestartPolicy(5, Duration.ofSeconds(1), Duration.ofMinutes(1), Duration.ofMinutes(2));
+
+        Duration delay(int attempt) {
+            long millis = initialDelay.toMillis() << Math.min(attempt, 20);
+            return Duration.ofMillis(Math.min(millis, maxDelay.toMillis()));
+        }
+    }
+
+    /**
+     * {@code cpu} is the process's total CPU time and {@code rssBytes} its resident set size; either is null
+     * or -1 when the instance is not running or the platform does not report it.
+     */
+    public record InstanceInfo(String name, State state, long pid, int restarts, Integer lastExitCode, Duration cpu, long rssBytes) {}
+
+    private static final SimpleLogger logger = new SimpleLogger(true);
+    private static final int DEFAULT_LOG_LINES = 2000;
+    private static final int MAX_LINE_LENGTH = 4096;
+    private static final Duration STOP_GRACE = Duration.ofSeconds(10);
+
+    private final Map<String, Instance> instances = new ConcurrentHashMap<>();
+    private final int logLines;
+
+    public InstanceSupervisor() {
+        this(DEFAULT_LOG_LINES);
+    }
+
+    public InstanceSupervisor(int logLines) {
+        this.logLines = logLines;
+    }
+
+    /**
+     * Starts an instance under {@code name}. {@code command} is asked again before every restart, so session
+     * values can be refreshed. Fails if an instance with that name is still alive.
+     */
+    public void start(String name, Supplier<List<String>> command, RestartPolicy restartPolicy) {
+        Instance instance = new Instance(name, command, restartPolicy, new LineBuffer(logLines));
+        instances.compute(name, (key, previous) -> {
+            if (previous != null && previous.isAlive()) {
+                throw new IllegalStateException("Instance " + name + " is already running");
+            }
+            return instance;
+        });
+        instance.thread.start();
+    }
+
+    public List<InstanceInfo> list() {
+        List<InstanceInfo> infos = new ArrayList<>(instances.size());
+        for (Instance instance : instances.values()) {
+            infos.add(instance.info());
+        }
+        return infos;
+    }
+
+    /**
+     * Returns up to {@code lines} of the most recent output of the instance, oldest first.
+     */
+    public List<String> tail(String name, int lines) {
+        Instance instance = instances.get(name);
+        return instance == null ? List.of() : instance.log.tail(lines);
+    }
+
+    /**
+     * Asks the instance to exit, kills it if it is still running after {@code grace}, and cancels any pending
+     * restart. Returns false if there is no such instance.
+     */
+    public boolean stop(String name, Duration grace) {
+        Instance instance = instances.get(name);
+        if (instance == null) {
+            return false;
+        }
+        instance.stop(grace);
+        return true;
+    }
+
+    /**
+     * Forgets an instance that is no longer alive, dropping its log.
+     */
+    public boolean remove(String name) {
+        Instance instance = instances.get(name);
+        return instance != null && !instance.isAlive() && instances.remove(name, instance);
+    }
+
+    @Override
+    public void close() {
+        instances.values().parallelStream().forEach(instance -> instance.stop(STOP_GRACE));
+    }
+
+    private static final class Instance {
+
+        private final String name;
+        private final Supplier<List<String>> command;
+        private final RestartPolicy restartPolicy;
+        private final LineBuffer log;
+
+        private final Thread thread;
+        private volatile boolean done;
+        private volatile Process process;
+        private volatile State state = State.RUNNING;
+        private volatile boolean stopping;
+        private volatile int restarts;
+        private volatile Integer lastExitCode;
+
+        private Instance(String name, Supplier<List<String>> command, RestartPolicy restartPolicy, LineBuffer log) {
+            this.name = name;
+            this.command = command;
+            this.restartPolicy = restartPolicy;
+            this.log = log;
+            this.thread = Thread.ofVirtual().name("instance-" + name).unstarted(this::supervise);
+        }
+
+        private void supervise() {
+            try {
+                run();
+            } finally {
+                done = true;
+            }
+        }
+
+        private void run() {
+            int attempt = 0;
+            while (!stopping) {
+                long started = System.nanoTime();
+                try {
+                    Process process = new ProcessBuilder(command.get()).start();
+                    this.process = process;
+                    if (stopping) {
+                        process.destroy();
+                    }
+                    state = State.RUNNING;
+                    logger.info("Instance " + name + " started with pid " + process.pid());
+
+                    Thread out = Thread.ofVirtual().start(() -> drain(process.inputReader()));
+                    Thread err = Thread.ofVirtual().start(() -> drain(process.errorReader()));
+                    lastExitCode = process.waitFor();
+                    out.join();
+                    err.join();
+                } catch (IOException e) {
+                    logger.error(e);
+                    lastExitCode = null;
+                } catch (InterruptedException e) {
+                    if (!stopping) {
+                        interrupted();
+                        return;
+                    }
+                }
+
+                if (stopping) {
+                    break;
+                }
+                if (lastExitCode != null && lastExitCode == 0) {
+                    state = State.EXITED;
+                    logger.info("Instance " + name + " exited");
+                    return;
+                }
+
+                if (System.nanoTime() - started >= restartPolicy.stableAfter().toNanos()) {
+                    attempt = 0;
+                }
+                if (attempt >= restartPolicy.maxRestarts()) {
+                    state = State.CRASHED;
+                    logger.error("Instance " + name + " crashed with exit code " + lastExitCode + ", giving up");
+                    return;
+                }
+
+                Duration delay = restartPolicy.delay(attempt++);
+                state = State.BACKING_OFF;
+                logger.warn("Instance " + name + " crashed with exit code " + lastExitCode + ", restarting in " + delay.toMillis() + " ms");
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    if (!stopping) {
+                        interrupted();
+                        return;
+                    }
+                }
+                restarts++;
+            }
+            state = State.STOPPED;
+        }
+
+        /**
+         * Ends supervision after an interrupt that no {@link #stop} asked for. Nothing would restart or reap the
+         * process any more, so it is stopped rather than left looking RUNNING.
+         */
+        private void interrupted() {
+            Thread.currentThread().interrupt();
+            logger.warn("Supervision of instance " + name + " was interrupted, stopping it");
+            Process process = this.process;
+            if (process != null) {
+                process.descendants().forEach(ProcessHandle::destroy);
+                process.destroy();
+            }
+            state = State.STOPPED;
+        }
+
+        /**
+         * Splits the output into lines like {@link BufferedReader#readLine()}, but keeps only the first
+         * {@code MAX_LINE_LENGTH} characters of each, so output without line breaks can't grow the heap.
+         */
+        private void drain(BufferedReader reader) {
+            try (reader) {
+                StringBuilder line = new StringBuilder();
+                boolean truncated = false;
+                char[] buffer = new char[8192];
+                int read;
+                while ((read = reader.read(buffer)) != -1) {
+                    for (int i = 0; i < read; i++) {
+                        char c = buffer[i];
+                        if (c == '\n') {
+                            log.add(line(line, truncated));
+                            line.setLength(0);
+                            truncated = false;
+                        } else if (line.length() < MAX_LINE_LENGTH) {
+                            line.append(c);
+                        } else {
+                            truncated = true;
+                        }
+                    }
+                }
+                if (!line.isEmpty()) {
+                    log.add(line(line, truncated));
+                }
+            } catch (IOException e) {
+                logger.debug(() -> "Output of instance " + name + " closed: " + e.getMessage());
+            }
+        }
+
+        private static String line(StringBuilder line, boolean truncated) {
+            if (truncated) {
+                return line + " [truncated]";
+            }
+            int length = line.length();
+            return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+        }
+
+        private void stop(Duration grace) {
+            stopping = true;
+            Process process = this.process;
+            if (process != null && process.isAlive()) {
+                process.descendants().forEach(ProcessHandle::destroy);
+                process.destroy();
+                try {
+                    if (!process.waitFor(grace.toMillis(), TimeUnit.MILLISECONDS)) {
+                        logger.warn("Instance " + name + " did not exit in time, killing it");
+                        process.descendants().forEach(ProcessHandle::destroyForcibly);
+                        process.destroyForcibly();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            thread.interrupt();
+            try {
+                thread.join(grace);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private boolean isAlive() {
+            return !done;
+        }
+
+        private InstanceInfo info() {
+            Process process = this.process;
+            boolean running = process != null && process.isAlive() && state == State.RUNNING;
+            Duration cpu = running ? process.info().totalCpuDuration().orElse(null) : null;
+            long rss = running ? residentSetSize(process.pid()) : -1;
+            return new InstanceInfo(name, state, process != null ? process.pid() : -1, restarts, lastExitCode, cpu, rss);
+        }
+    }
+
+    /**
+     * Reads {@code VmRSS} from {@code /proc/<pid>/status}, which only exists on Linux.
+     */
+    private static long residentSetSize(long pid) {
+        Path status = Path.of("/proc", String.valueOf(pid), "status");
+        try (BufferedReader reader = Files.newBufferedReader(status)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.substring(6).trim().split("\\s+")[0]) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Keeps the last {@code capacity} lines, overwriting the oldest.
+     */
+    private static final class LineBuffer {
+
+        private final String[] lines;
+        private long written;
+
+        private LineBuffer(int capacity) {
+            this.lines = new String[capacity];
+        }
+
+        private synchronized void add(String line) {
+            lines[(int) (written++ % lines.length)] = line;
+        }
+
+        private synchronized List<String> tail(int count) {
+            int available = (int) Math.min(Math.min(written, lines.length), Math.max(count, 0));
+            if (available == 0) {
+                return Collections.emptyList();
+            }
+            List<String> tail = new ArrayList<>(available);
+            for (long i = written - available; i < written; i++) {
+                tail.add(lines[(int) (i % lines.length)]);
+            }
+            return tail;
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+package launcher;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import logging.SimpleLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Picks heap bounds, garbage collector, large pages and class data sharing flags for the game JVM from the
+ * machine it runs on. Every choice can be overridden per version with a {@code jvm.json} next to the version,
+ * which applies to every instance launched from it.
+ */
+public final class JvmTuning {
+
+    public record Machine(int cores, long memoryBytes, boolean transparentHugePages) {
+
+        public static Machine detect() {
+            long memory = ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os
+                    ? os.getTotalMemorySize()
+                    : Runtime.getRuntime().maxMemory() * 4;
+            return new Machine(Runtime.getRuntime().availableProcessors(), memory, transparentHugePagesAvailable());
+        }
+
+        private static boolean transparentHugePagesAvailable() {
+            Path setting = Path.of("/sys/kernel/mm/transparent_hugepage/enabled");
+            try {
+                String value = Files.readString(setting);
+                return value.contains("[always]") || value.contains("[madvise]");
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Per-version overrides; null fields keep the automatic choice. {@code gc} is one of {@code g1},
+     * {@code zgc}, {@code shenandoah}, {@code serial} or {@code default} (no flag), heap sizes use the JVM's
+     * own syntax such as {@code 6G}.
+     */
+    public record Overrides(String gc, String maxHeap, String minHeap, Boolean largePages, Boolean cds, List<String> extraArguments) {
+
+        public static final Overrides NONE = new Overrides(null, null, null, null, null, null);
+
+        public static Overrides read(Path overridesPath) {
+            if (!Files.exists(overridesPath)) {
+                return NONE;
+            }
+            try (Reader reader = Files.newBufferedReader(overridesPath)) {
+                Overrides overrides = gson.fromJson(reader, Overrides.class);
+                return overrides == null ? NONE : overrides;
+            } catch (IOException | JsonParseException e) {
+                logger.warn("Ignoring unreadable JVM overrides " + overridesPath + ": " + e.getMessage());
+                return NONE;
+            }
+        }
+    }
+
+    private static final SimpleLogger logger = new SimpleLogger(true);
+    private static final Gson gson = new Gson();
+
+    private static final long GIB = 1024L * 1024 * 1024;
+    private static final long MIN_HEAP = GIB;
+    private static final long MAX_HEAP = 8 * GIB;
+    private static final Pattern VERSION = Pattern.compile("version \"(\\d+)(?:\\.(\\d+))?");
+
+    private JvmTuning() {}
+
+    public static List<String> arguments(Machine machine, int javaVersion, Overrides overrides, Path sharedArchive) {
+
+        List<String> args = new ArrayList<>();
+
+        long maxHeap = Math.min(machine.memoryBytes() / 2, Math.clamp(machine.memoryBytes() / 4, MIN_HEAP, MAX_HEAP));
+        args.add("-Xmx" + (overrides.maxHeap() != null ? overrides.maxHeap() : maxHeap / (1024 * 1024) + "M"));
+        if (overrides.minHeap() != null) {
+            args.add("-Xms" + overrides.minHeap());
+        } else if (overrides.maxHeap() == null) {
+            args.add("-Xms" + maxHeap / 2 / (1024 * 1024) + "M");
+        }
+
+        String gc = overrides.gc() != null ? overrides.gc().toLowerCase(Locale.ROOT)
+                : javaVersion >= 21 && machine.cores() >= 8 && machine.memoryBytes() >= 16 * GIB ? "zgc"
+                : machine.cores() >= 2 ? "g1" : "serial";
+        switch (gc) {
+            case "zgc" -> {
+                args.add("-XX:+UseZGC");
+                if (javaVersion >= 21 && javaVersion < 23) {
+                    args.add("-XX:+ZGenerational");
+                }
+            }
+            case "shenandoah" -> args.add("-XX:+UseShenandoahGC");
+            case "serial" -> args.add("-XX:+UseSerialGC");
+            case "g1" -> {
+                args.add("-XX:+UseG1GC");
+                args.add("-XX:MaxGCPauseMillis=50");
+                args.add("-XX:+ParallelRefProcEnabled");
+                args.add("-XX:+DisableExplicitGC");
+            }
+            default -> { }
+        }
+
+        boolean linux = Platform.current().osName().equals("linux");
+        if (overrides.largePages() != null ? overrides.largePages() : linux && machine.transparentHugePages()) {
+            args.add(linux ? "-XX:+UseTransparentHugePages" : "-XX:+UseLargePages");
+        }
+
+        if ((overrides.cds() == null || overrides.cds()) && javaVersion >= 13) {
+            if (javaVersion >= 19) {
+                args.add("-XX:+AutoCreateSharedArchive");
+                args.add("-XX:SharedArchiveFile=" + sharedArchive);
+            } else if (Files.exists(sharedArchive)) {
+                args.add("-XX:SharedArchiveFile=" + sharedArchive);
+            } else {
+                args.add("-XX:ArchiveClassesAtExit=" + sharedArchive);
+            }
+        }
+
+        if (overrides.extraArguments() != null) {
+            args.addAll(overrides.extraArguments());
+        }
+
+        return args;
+    }
+
+    /**
+     * Asks {@code javaExecutable} for its feature version, or returns {@code fallback} when it cannot be run.
+     */
+    public static int javaVersion(String javaExecutable, int fallback) {
+        try {
+            Process process = new ProcessBuilder(javaExecutable, "-version").redirectErrorStream(true).start();
+            String output;
+            try (InputStream input = process.getInputStream()) {
+                output = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            process.waitFor(10, TimeUnit.SECONDS);
+
+            Matcher matcher = VERSION.matcher(output);
+            if (matcher.find()) {
+                int major = Integer.parseInt(matcher.group(1));
+                return major == 1 && matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : major;
+            }
+        } catch (IOException e) {
+            logger.warn("Could not run " + javaExecutable + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return fallback;
+    }
+
+}
@@ -0,0 +1,102 @@
+package launcher;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import logging.SimpleLogger;
+import network.DownloadManager;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fully resolved command line for one version and set of launch settings. Everything that only depends on
+ * the version JSON and the settings (classpath, JVM and game arguments, directories) is already substituted;
+ * the elements listed in {@code slots} still hold {@code ${name}} placeholders for per-session values such as
+ * the player name and UUID.
+ */
+public record LaunchPlan(String key, List<String> command, int[] slots) {
+
+    private static final SimpleLogger logger = new SimpleLogger(true);
+    private static final Gson gson = new Gson();
+
+    public static LaunchPlan of(String key, List<String> command) {
+        List<Integer> slots = new ArrayList<>();
+        for (int i = 0; i < command.size(); i++) {
+            if (command.get(i).contains("${")) {
+                slots.add(i);
+            }
+        }
+        return new LaunchPlan(key, List.copyOf(command), slots.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Returns the command with the placeholders in every slot replaced from {@code values}. Only the slots
+     * are looked at; placeholders without a value are left as they are.
+     */
+    public List<String> fill(Map<String, String> values) {
+        List<String> args = new ArrayList<>(command);
+        for (int slot : slots) {
+            args.set(slot, substitute(command.get(slot), values));
+        }
+        return args;
+    }
+
+    static String substitute(String template, Map<String, String> values) {
+        int start = template.indexOf("${");
+        if (start < 0) {
+            return template;
+        }
+
+        StringBuilder builder = new StringBuilder(template.length() + 32);
+        int position = 0;
+        while (start >= 0) {
+            int end = template.indexOf('}', start);
+            if (end < 0) {
+                break;
+            }
+            String value = values.get(template.substring(start + 2, end));
+            builder.append(template, position, start).append(value != null ? value : template.substring(start, end + 1));
+            position = end + 1;
+            start = template.indexOf("${", position);
+        }
+        return builder.append(template, position, template.length()).toString();
+    }
+
+    /**
+     * Reads the plan stored at {@code planPath}, or returns null when there is none or it was built for
+     * another key.
+     */
+    public static LaunchPlan read(Path planPath, String key) {
+        if (!Files.exists(planPath)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(planPath)) {
+            LaunchPlan plan = gson.fromJson(reader, LaunchPlan.class);
+            return plan != null && key.equals(plan.key()) && plan.command() != null && plan.slots() != null ? plan : null;
+        } catch (IOException | JsonParseException e) {
+            return null;
+        }
+    }
+
+    public void write(Path planPath) {
+        Path tempPath = planPath.resolveSibling(planPath.getFileName() + ".part");
+        try (Writer writer = Files.newBufferedWriter(tempPath)) {
+            gson.toJson(this, writer);
+        } catch (IOException e) {
+            logger.error(e);
+            return;
+        }
+        try {
+            DownloadManager.commitPartFile(tempPath, planPath);
+        } catch (IOException e) {
+            logger.error(e);
+        }
+    }
+
+}
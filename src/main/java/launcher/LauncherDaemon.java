@@ -0,0 +1,282 @@
+package launcher;
+
+import logging.SimpleLogger;
+import network.DownloadManager;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.StandardProtocolFamily;
+import java.net.URI;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps a launcher resident behind a Unix domain socket so that CLI calls skip JVM startup, the manifest
+ * fetch and profile parsing, and reuse the verification index and HTTP connections of earlier calls.
+ * <p>
+ * A client sends one command line per connection and reads lines back until the connection closes: lines
+ * starting with {@code >} are progress, the last one starts with {@code +} on success or {@code !} on
+ * failure. See {@link DaemonClient}.
+ */
+public final class LauncherDaemon implements Closeable {
+
+    public static final Path DEFAULT_SOCKET = DownloadManager.getCacheRoot().resolve("launcher.sock");
+
+    private static final SimpleLogger logger = new SimpleLogger(true);
+    private static final URI MANIFEST = URI.create("https://launchermeta.mojang.com/mc/game/version_manifest.json");
+    private static final long PROGRESS_INTERVAL_MILLIS = 500;
+    private static final int DEFAULT_TAIL_LINES = 50;
+
+    private final Path socketPath;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, MinecraftManager> managers = new ConcurrentHashMap<>();
+    private final InstanceSupervisor supervisor = new InstanceSupervisor();
+    private final ReentrantLock installLock = new ReentrantLock();
+
+    public LauncherDaemon(Path socketPath) throws IOException {
+        this.socketPath = socketPath.toAbsolutePath();
+        Files.createDirectories(this.socketPath.getParent());
+        if (Files.exists(this.socketPath)) {
+            if (DaemonClient.isRunning(this.socketPath)) {
+                throw new IOException("A launcher daemon is already listening on " + this.socketPath);
+            }
+            Files.delete(this.socketPath);
+        }
+
+        this.serverChannel = bind(this.socketPath);
+    }
+
+    /**
+     * Binds the socket inside a fresh directory only the owner can enter, restricts the socket to the owner
+     * and only then renames it into place, so no other user can connect in between.
+     */
+    private static ServerSocketChannel bind(Path socketPath) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        Path privateDirectory;
+        try {
+            privateDirectory = Files.createTempDirectory(socketPath.getParent(), ".daemon",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (UnsupportedOperationException e) {
+            // not a POSIX filesystem, the directory's permissions apply
+            return channel.bind(UnixDomainSocketAddress.of(socketPath));
+        }
+
+        Path boundPath = privateDirectory.resolve("s");
+        try {
+            channel.bind(UnixDomainSocketAddress.of(boundPath));
+            Files.setPosixFilePermissions(boundPath, PosixFilePermissions.fromString("rw-------"));
+            Files.move(boundPath, socketPath, StandardCopyOption.ATOMIC_MOVE);
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        } finally {
+            Files.deleteIfExists(boundPath);
+            Files.delete(privateDirectory);
+        }
+    }
+
+    /**
+     * Warms the manifest and accepts connections on the calling thread until the daemon is closed or asked
+     * to shut down.
+     */
+    public void serve() {
+        try {
+            VersionManifest.get(MANIFEST);
+        } catch (IOException e) {
+            logger.warn("Version manifest is not available yet: " + e.getMessage());
+        }
+
+        logger.info("Launcher daemon listening on " + socketPath);
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                connections.submit(() -> handle(channel));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                logger.error(e);
+            }
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        try (channel;
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), true)) {
+
+            String line = in.readLine();
+            if (line == null || line.isBlank()) {
+                out.println("! Empty command");
+                return;
+            }
+
+            String[] command = line.trim().split("\\s+");
+            try {
+                out.println("+ " + execute(command, out));
+            } catch (IllegalArgumentException | IllegalStateException | IOException | UncheckedIOException e) {
+                out.println("! " + e.getMessage());
+            } catch (RuntimeException e) {
+                // a bug rather than a bad request: the client still gets an answer, the daemon keeps the trace
+                Exception cause = e instanceof CompletionException && e.getCause() instanceof Exception inner ? inner : e;
+                logger.error(cause);
+                out.println("! " + cause);
+            }
+        } catch (IOException e) {
+            logger.debug(() -> "Daemon client went away: " + e.getMessage());
+        }
+    }
+
+    private String execute(String[] command, PrintWriter out) throws IOException {
+        return switch (command[0].toLowerCase(Locale.ROOT)) {
+            case "list" -> {
+                boolean all = command.length > 1 && command[1].equals("all");
+                int count = 0;
+                for (VersionManifest.Entry entry : VersionManifest.get(MANIFEST).getVersions()) {
+                    if (all || entry.type().equals("release")) {
+                        out.println("> " + entry.id() + " " + entry.type());
+                        count++;
+                    }
+                }
+                yield count + " versions";
+            }
+            case "install" -> {
+                String version = argument(command, 1, "install <version>");
+                install(manager(version), out);
+                yield "Minecraft " + version + " is installed";
+            }
+            case "launch" -> {
+                String version = argument(command, 1, "launch <version> [name]; every instance of a version uses its versions/<version>/jvm.json");
+                String name = command.length > 2 ? command[2] : version;
+                manager(version).launch(supervisor, name, InstanceSupervisor.RestartPolicy.NEVER);
+                yield "Launched " + version + " as " + name;
+            }
+            case "instances" -> {
+                for (InstanceSupervisor.InstanceInfo info : supervisor.list()) {
+                    out.println("> " + info.name() + " " + info.state() + " pid " + info.pid()
+                            + (info.rssBytes() >= 0 ? " rss " + info.rssBytes() / (1024 * 1024) + " MiB" : ""));
+                }
+                yield supervisor.list().size() + " instances";
+            }
+            case "tail" -> {
+                String name = argument(command, 1, "tail <name> [lines]");
+                int lines = command.length > 2 ? Integer.parseInt(command[2]) : DEFAULT_TAIL_LINES;
+                supervisor.tail(name, lines).forEach(logLine -> out.println("> " + logLine));
+                yield name;
+            }
+            case "stop" -> {
+                String name = argument(command, 1, "stop <name>");
+                if (!supervisor.stop(name, Duration.ofSeconds(10))) {
+                    throw new IllegalArgumentException("No instance " + name);
+                }
+                yield "Stopped " + name;
+            }
+            case "gc" -> {
+                boolean dryRun = command.length > 1 && command[1].equals("--dry-run");
+                MinecraftManager.collectGarbage(dryRun);
+                yield dryRun ? "Dry run finished" : "Garbage collection finished";
+            }
+            case "shutdown" -> {
+                connections.submit(this::close);
+                yield "Shutting down";
+            }
+            default -> throw new IllegalArgumentException("Unknown command " + command[0]
+                    + ", expected list, install, launch, instances, tail, stop, gc or shutdown");
+        };
+    }
+
+    /**
+     * Runs an install and reports the files left and the download speed every {@code PROGRESS_INTERVAL_MILLIS}
+     * until it completes. Installs run one at a time: they share part files when they overlap, and the
+     * progress counters of the download manager are global.
+     */
+    private void install(MinecraftManager manager, PrintWriter out) throws IOException {
+        if (!installLock.tryLock()) {
+            out.println("> Waiting for another install to finish");
+            installLock.lock();
+        }
+        try {
+            awaitInstall(manager.install(), out);
+        } finally {
+            installLock.unlock();
+        }
+    }
+
+    /**
+     * Waits for {@code install} even after the client went away, so that the install lock is held for as
+     * long as it runs.
+     */
+    private static void awaitInstall(CompletableFuture<Void> install, PrintWriter out) throws IOException {
+        boolean reporting = true;
+        while (true) {
+            try {
+                install.get(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                if (reporting) {
+                    out.println("> " + DownloadManager.filesLeft.get() + " files left, "
+                            + String.format(Locale.ROOT, "%.2f", DownloadManager.getCurrentDownloadSpeed()) + " MiB/s");
+                    reporting = !out.checkError();
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() instanceof CompletionException completion ? completion.getCause() : e.getCause();
+                throw cause instanceof IOException io ? io : new IOException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private MinecraftManager manager(String version) throws IOException {
+        if (VersionManifest.get(MANIFEST).find(version).isEmpty()) {
+            throw new IllegalArgumentException("Unknown version " + version);
+        }
+        return managers.computeIfAbsent(version, MinecraftManager::new);
+    }
+
+    private static String argument(String[] command, int index, String usage) {
+        if (command.length <= index) {
+            throw new IllegalArgumentException("Usage: " + usage);
+        }
+        return command[index];
+    }
+
+    @Override
+    public void close() {
+        try {
+            Files.deleteIfExists(socketPath);
+            serverChannel.close();
+        } catch (IOException e) {
+            logger.error(e);
+        }
+        supervisor.close();
+        connections.shutdown();
+    }
+
+}
@@ -1,22 +1,27 @@
 package launcher;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-
 import logging.SimpleLogger;
 import network.DownloadManager;
+import network.ObjectStore;
 
 import java.io.*;
 import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MinecraftManager {
 
-    private static final Gson gson = new Gson();
     private static final SimpleLogger logger = new SimpleLogger(true);
+    private static final ExecutorService installThreads = Executors.newVirtualThreadPerTaskExecutor();
 
     private static final Path VERSIONS = Path.of("versions");
 
@@ -27,6 +32,10 @@ public class MinecraftManager {
 
     private static final URI MANIFEST = URI.create("https://launchermeta.mojang.com/mc/game/version_manifest.json");
     private static final String RESOURCES = "https://resources.download.minecraft.net/";
+    private static final String LIBRARIES_BASE = "https://libraries.minecraft.net/";
+    private static final int ASSET_QUEUE_CAPACITY = 512;
+    private static final Path INSTALL_REPORT = DownloadManager.getCacheRoot().resolve("install-report.json");
+    private static final String JVM_OVERRIDES = "jvm.json";
 
     private String versionID;
     private Path VERSION;
@@ -37,9 +46,33 @@ public class MinecraftManager {
         getVersionManifestURI();
     }
 
+    public static void setAssetMirrors(List<String> mirrorBases) {
+        DownloadManager.setMirrors(RESOURCES, mirrorBases);
+    }
+
+    public static void setLibraryMirrors(List<String> mirrorBases) {
+        DownloadManager.setMirrors(LIBRARIES_BASE, mirrorBases);
+    }
+
+    /**
+     * Deletes libraries, asset objects and shared store objects no installed version uses any more, or only
+     * lists them when {@code dryRun} is set.
+     */
+    public static void collectGarbage(boolean dryRun) {
+        try {
+            ObjectStore objectStore = DownloadManager.getObjectStore();
+            ArtifactCollector.Result result = ArtifactCollector.collect(VERSIONS, LIBRARIES, INDEXES, OBJECTS,
+                    objectStore != null ? objectStore.getRoot() : null, dryRun);
+            logger.info((dryRun ? "Would remove " : "Removed ") + result.files() + " unused files, "
+                    + (dryRun ? "freeing " : "freed ") + String.format(Locale.ROOT, "%.1f", result.bytes() / (1024.0 * 1024.0)) + " MiB.");
+        } catch (IOException e) {
+            logger.error(e);
+        }
+    }
+
     public void launch() {
 
-        ProcessBuilder processBuilder = new ProcessBuilder(getLaunchArgs());
+        ProcessBuilder processBuilder = new ProcessBuilder(getLaunchPlan().fill(sessionValues()));
 
         processBuilder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
         processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
@@ -55,18 +88,69 @@ public class MinecraftManager {
 
     }
 
-    //FIXME: поток не успевает записать файл из-за этого происходит NullPointerException
+    /**
+     * Starts this version under {@code supervisor} as instance {@code name} and returns right away.
+     */
+    public void launch(InstanceSupervisor supervisor, String name, InstanceSupervisor.RestartPolicy restartPolicy) {
+        LaunchPlan plan = getLaunchPlan();
+        supervisor.start(name, () -> plan.fill(sessionValues()), restartPolicy);
+    }
+
     public void downloadAll() {
         logger.info("Starting downloading minecraft " + versionID);
-        DownloadManager.downloadFile(getVersionManifestURI(), "UNPROVIDED", VERSION, false);
-        DownloadManager.downloadFiles(getLibrariesURIs(), LIBRARIES, true);
-        DownloadManager.downloadFile(getAssetsIndexURI(), "UNPROVIDED", INDEXES, false);
-        DownloadManager.downloadFiles(getClientURI(), VERSION, false);
-
-        //TODO
-        //new File(VERSION.resolve(Path.of("client.jar")).toString()).renameTo(VERSION.resolve(Path.of(versionID + ".jar")).toFile());
+        try {
+            install().join();
+            logger.info("Minecraft " + versionID + " is installed.");
+        } catch (CompletionException e) {
+            logger.error(e.getCause() instanceof Exception cause ? cause : e);
+        }
+    }
 
+    /**
+     * Install graph: manifest -> version JSON -> {libraries -> natives, client, asset index -> asset objects}.
+     * Every stage starts as soon as its inputs are complete; the returned future completes when all
+     * branches are done and fails if any of them failed. Download telemetry for the run is written to
+     * {@code cache/install-report.json} either way.
+     */
+    public CompletableFuture<Void> install() {
+
+        DownloadManager.getMetrics().reset();
+
+        CompletableFuture<URI> manifest = CompletableFuture.supplyAsync(this::getVersionManifestURI, installThreads);
+
+        CompletableFuture<VersionProfile> versionJson = manifest
+                .thenCompose(uri -> DownloadManager.downloadFileTo(uri, "UNPROVIDED", VERSION.resolve(versionID + ".json")))
+                .thenApply(downloaded -> {
+                    require(downloaded, "version " + versionID + " JSON");
+                    return getVersionProfile();
+                });
+
+        CompletableFuture<Void> libraries = versionJson.thenAcceptAsync(profile -> {
+            require(DownloadManager.downloadFiles(getLibrariesURIs(), LIBRARIES, true), "libraries");
+            extractNatives();
+        }, installThreads);
+
+        CompletableFuture<Void> client = versionJson.thenCompose(profile ->
+                DownloadManager.downloadFileTo(URI.create(profile.client().url()), profile.client().sha1(), VERSION.resolve(versionID + ".jar"))
+        ).thenAccept(downloaded -> require(downloaded, "client"));
+
+        CompletableFuture<Void> assets = versionJson.thenCompose(profile ->
+                DownloadManager.downloadFileTo(getAssetsIndexURI(), profile.assetIndex().sha1(), INDEXES.resolve(getVersionIndex() + ".json"))
+        ).thenAcceptAsync(downloaded -> {
+            require(downloaded, "asset index");
+            BlockingQueue<Map.Entry<URI, String>> queue = new ArrayBlockingQueue<>(ASSET_QUEUE_CAPACITY);
+            CompletableFuture<Void> parser = AssetIndexReader.feed(INDEXES.resolve(getVersionIndex() + ".json"), RESOURCES, queue, installThreads);
+            require(DownloadManager.downloadQueue(queue, parser, OBJECTS, true), "assets");
+        }, installThreads);
+
+        return CompletableFuture.allOf(libraries, client, assets)
+                .whenComplete((ignored, failure) -> DownloadManager.writeReport(versionID, failure == null, INSTALL_REPORT));
+    }
 
+    private static void require(boolean completed, String stage) {
+        if (!completed) {
+            throw new CompletionException(new IOException("Failed to download " + stage));
+        }
     }
 
 
@@ -79,80 +163,118 @@ public class MinecraftManager {
     }
 
 
-    private List<String> getLaunchArgs() {
+    /**
+     * Returns the launch plan for this version, rebuilding it only when the version JSON or the launch
+     * settings changed since it was stored next to the version.
+     */
+    LaunchPlan getLaunchPlan() {
 
-        List<String> args = new ArrayList<>();
-        args.add("java");
-
-        try (FileReader fileReader = new FileReader(VERSION.resolve(Path.of(versionID + ".json")).toFile())) {
+        Path versionJson = VERSION.resolve(versionID + ".json");
+        Path planPath = VERSION.resolve(versionID + ".launch.json");
+        String key;
+        try {
+            key = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(Files.readAllBytes(versionJson)))
+                    + ":" + Integer.toHexString(String.join("|", launchSettings()).hashCode());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
 
-            JsonObject root = gson.fromJson(fileReader, JsonObject.class);
-            JsonArray jvmArguments = root.getAsJsonObject("arguments").getAsJsonArray("jvm");
-            JsonArray gameArguments = root.getAsJsonObject("arguments").getAsJsonArray("game");
+        LaunchPlan plan = LaunchPlan.read(planPath, key);
+        if (plan == null) {
+            plan = buildLaunchPlan(key);
+            plan.write(planPath);
+        }
+        return plan;
+    }
 
-            for (JsonElement element : jvmArguments) {
-                String arg = element.toString().replace("\"", "");
-                if (arg.startsWith("-")) {
-                    arg = arg.replace("${natives_directory}", VERSION.resolve(Path.of("natives")).toString());
-                    if (!arg.contains("$")) {
-                        args.add(arg);
-                    }
-                }
-            }
+    /**
+     * Everything besides the version JSON that ends up in the launch plan. The Java version is not part of
+     * it, since finding it out means starting a JVM.
+     */
+    private List<String> launchSettings() {
+        return List.of("java", System.getProperty("user.dir"), ASSETS.toString(), VERSION.resolve("natives").toString(),
+                Platform.current().toString(), File.pathSeparator, JvmTuning.Machine.detect().toString(),
+                JvmTuning.Overrides.read(VERSION.resolve(JVM_OVERRIDES)).toString(),
+                String.valueOf(Files.exists(VERSION.resolve(versionID + ".jsa"))));
+    }
 
+    private LaunchPlan buildLaunchPlan(String key) {
 
-            String separator = System.getProperty("os.name").contains("win") ? ";" : ":";
-            StringBuilder cp = new StringBuilder();
+        VersionProfile profile = getVersionProfile();
 
-            getLibrariesURIs().keySet().forEach(uri -> cp.append(LIBRARIES.resolve(uri.getPath().substring(1))).append(separator));
-            cp.append(VERSION.resolve(versionID + ".jar")).append(separator);
-            args.add(cp.deleteCharAt(cp.length() - 1).toString());
+        StringBuilder cp = new StringBuilder();
+        getClasspathURIs().keySet().forEach(uri -> cp.append(LIBRARIES.resolve(uri.getPath().substring(1))).append(File.pathSeparator));
+        cp.append(VERSION.resolve(versionID + ".jar"));
 
-            args.add(root.get("mainClass").getAsString());
+        Map<String, String> settings = Map.of(
+                "natives_directory", VERSION.resolve("natives").toString(),
+                "classpath", cp.toString(),
+                "version_name", versionID,
+                "game_directory", System.getProperty("user.dir"),
+                "assets_root", ASSETS.toString(),
+                "assets_index_name", profile.assets(),
+                "version_type", profile.type());
 
-            for (JsonElement element : gameArguments) {
-                String arg = element.toString().replace("\"", "");
-                if (arg.startsWith("-") || arg.startsWith("$")) {
+        List<String> args = new ArrayList<>();
+        args.add("java");
+        args.addAll(JvmTuning.arguments(JvmTuning.Machine.detect(),
+                JvmTuning.javaVersion("java", profile.javaVersion() != null ? profile.javaVersion().majorVersion() : 8),
+                JvmTuning.Overrides.read(VERSION.resolve(JVM_OVERRIDES)),
+                VERSION.resolve(versionID + ".jsa")));
+
+        boolean hasClasspath = false;
+        for (VersionProfile.Argument argument : profile.jvmArguments()) {
+            if (!Platform.current().allows(argument.rules())) {
+                continue;
+            }
+            for (String arg : argument.values()) {
+                hasClasspath |= arg.equals("${classpath}");
+                arg = LaunchPlan.substitute(arg, settings);
+                if (!arg.contains("${")) {
                     args.add(arg);
                 }
             }
-
-            //FIXME: ну эт костыль хд
-            args.set(args.indexOf("${auth_player_name}"), "Hadvart_");
-            args.set(args.indexOf("${version_name}"), versionID);
-            args.set(args.indexOf("${game_directory}"), System.getProperty("user.dir"));
-            args.set(args.indexOf("${assets_root}"), "assets");
-            args.set(args.indexOf("${assets_index_name}"), "18");
-            args.set(args.indexOf("${auth_uuid}"), String.valueOf(UUID.randomUUID()));
-            args.set(args.indexOf("${auth_access_token}"), "00000000000000000000000000000000");
-            args.set(args.indexOf("${clientid}"), "0000");
-            args.set(args.indexOf("${auth_xuid}"), "0000");
-            args.set(args.indexOf("${user_type}"), "mojang");
-            args.set(args.indexOf("${version_type}"), "release");
-
-
-        } catch (IOException e) {
-            logger.error(e);
+        }
+        if (!hasClasspath) {
+            args.add("-cp");
+            args.add(cp.toString());
         }
 
+        args.add(profile.mainClass());
 
+        for (VersionProfile.Argument argument : profile.gameArguments()) {
+            if (!Platform.current().allows(argument.rules())) {
+                continue;
+            }
+            for (String arg : argument.values()) {
+                if (arg.startsWith("-") || arg.startsWith("$")) {
+                    args.add(LaunchPlan.substitute(arg, settings));
+                }
+            }
+        }
 
-        return args;
+        return LaunchPlan.of(key, args);
     }
 
+    private static Map<String, String> sessionValues() {
+        //FIXME: ну эт костыль хд
+        return Map.of(
+                "auth_player_name", "Hadvart_",
+                "auth_uuid", String.valueOf(UUID.randomUUID()),
+                "auth_access_token", "00000000000000000000000000000000",
+                "clientid", "0000",
+                "auth_xuid", "0000",
+                "user_type", "mojang");
+    }
 
-
-    private Map<URI, String> getClientURI() {
-        JsonObject jsonRoot = new JsonObject();
-
-        try (FileReader fileReader = new FileReader(VERSION.resolve(Path.of(versionID + ".json")).toString())) {
-            jsonRoot = gson.fromJson(fileReader, JsonObject.class);
+    private VersionProfile getVersionProfile() {
+        try {
+            return VersionProfileCache.load(VERSION.resolve(Path.of(versionID + ".json")));
         } catch (IOException e) {
-            System.err.println(e.getMessage());
+            throw new UncheckedIOException(e);
         }
-
-        JsonObject client = jsonRoot.getAsJsonObject("downloads").getAsJsonObject("client");
-        return Map.of(URI.create(client.get("url").getAsString()), client.get("sha1").getAsString());
     }
 
     public static Map<String, List<String>> getAvailableVersions() {
@@ -163,19 +285,17 @@ public class MinecraftManager {
         List<String> snapshots = new ArrayList<>();
         List<String> oldVersions = new ArrayList<>();
 
-        try (InputStreamReader reader = new InputStreamReader(MANIFEST.toURL().openStream())) {
-
-            JsonObject jsonRoot = gson.fromJson(reader, JsonObject.class);
-            for (JsonElement version : jsonRoot.getAsJsonArray("versions")) {
-                String type = version.getAsJsonObject().get("type").getAsString();
+        try {
+            for (VersionManifest.Entry version : VersionManifest.get(MANIFEST).getVersions()) {
+                String type = version.type();
                 if (type.equals("release")) {
-                    releases.add(version.getAsJsonObject().get("id").getAsString());
+                    releases.add(version.id());
                 }
                 if (type.equals("snapshot")) {
-                    snapshots.add(version.getAsJsonObject().get("id").getAsString());
+                    snapshots.add(version.id());
                 }
                 if (type.equals("old_alpha") || type.equals("old_beta")) {
-                    oldVersions.add(version.getAsJsonObject().get("id").getAsString());
+                    oldVersions.add(version.id());
                 }
             }
         } catch (IOException e) {
@@ -192,24 +312,18 @@ public class MinecraftManager {
 
     private URI getVersionManifestURI() {
 
-        try (InputStreamReader reader = new InputStreamReader(MANIFEST.toURL().openStream() )) {
-
-            JsonObject jsonRoot = gson.fromJson(reader, JsonObject.class);
-            JsonArray versions = jsonRoot.getAsJsonArray("versions");
+        try {
+            VersionManifest manifest = VersionManifest.get(MANIFEST);
 
-            for (JsonElement version : versions) {
-                if (version.getAsJsonObject().get("id").getAsString().equals(versionID)) {
-                    return URI.create(version.getAsJsonObject().get("url").getAsString());
-                }
+            Optional<VersionManifest.Entry> version = manifest.find(versionID);
+            if (version.isEmpty()) {
+                versionID = manifest.getLatestRelease();
+                this.VERSION = VERSIONS.resolve(versionID);
+                version = manifest.find(versionID);
             }
 
-            versionID = jsonRoot.getAsJsonObject("latest").get("release").getAsString();
-            this.VERSION = VERSIONS.resolve(versionID);
-
-            for (JsonElement version : versions) {
-                if (version.getAsJsonObject().get("id").getAsString().equals(versionID)) {
-                    return URI.create(version.getAsJsonObject().get("url").getAsString());
-                }
+            if (version.isPresent()) {
+                return version.get().url();
             }
 
         } catch (IOException e) {
@@ -219,92 +333,79 @@ public class MinecraftManager {
         return URI.create("404");
     }
 
-    private Map<URI, String> getAssetsURIs() {
-
-        Map<URI, String> uris = new HashMap<>();
-
-        try (FileReader reader = new FileReader(INDEXES.resolve(Path.of(getVersionIndex() + ".json")).toFile())) {
-            JsonObject root = gson.fromJson(reader, JsonObject.class);
-            root.getAsJsonObject("objects").entrySet().forEach(entry -> {
-                String hash = entry.getValue().getAsJsonObject().get("hash").getAsString();
-                uris.put(URI.create(RESOURCES + hash.substring(0, 2) + "/" + hash), hash);
-            });
-        } catch (IOException e) {
-            System.err.println(e.getMessage());
-        }
-
-        return uris;
-    }
-
     private URI getAssetsIndexURI() {
-        JsonObject jsonRoot = new JsonObject();
-
-        try (FileReader fileReader = new FileReader(VERSION.resolve(Path.of(versionID + ".json")).toString())) {
-            jsonRoot = gson.fromJson(fileReader, JsonObject.class);
-        } catch (IOException e) {
-            System.err.println(e.getMessage());
-        }
-
-        return URI.create(jsonRoot.getAsJsonObject("assetIndex").get("url").getAsString());
+        return URI.create(getVersionProfile().assetIndex().url());
     }
 
 
     private String getVersionIndex() {
-        JsonObject jsonRoot = new JsonObject();
-
-        try (FileReader fileReader = new FileReader(VERSION.resolve(Path.of(versionID + ".json")).toString())) {
-            jsonRoot = gson.fromJson(fileReader, JsonObject.class);
-        } catch (IOException e) {
-            System.err.println(e.getMessage());
-        }
-        return jsonRoot.getAsJsonPrimitive("assets").getAsString();
+        return getVersionProfile().assets();
     }
 
 
-    private Map<URI, String> getLibrariesURIs()  {
+    /**
+     * Libraries that go on the classpath: every library allowed on this platform, with natives-only
+     * artifacts for other architectures left out.
+     */
+    private Map<URI, String> getClasspathURIs() {
 
-        JsonObject jsonRoot = new JsonObject();
+        Map<URI, String> classpathURIs = new LinkedHashMap<>();
+        Platform platform = Platform.current();
 
-        try (FileReader fileReader = new FileReader(VERSION.resolve(Path.of(versionID + ".json")).toString())) {
-            jsonRoot = gson.fromJson(fileReader, JsonObject.class);
-        } catch (IOException e) {
-            System.err.println(e.getMessage());
+        for (VersionProfile.Library library : getVersionProfile().libraries()) {
+            VersionProfile.Download artifact = library.artifact();
+            if (artifact != null && platform.allows(library.rules()) && platform.matchesNativesArch(library)) {
+                classpathURIs.put(URI.create(artifact.url()), artifact.sha1());
+            }
         }
 
-        Map<URI, String> librariesURIs = new HashMap<>();
-        JsonArray librariesArray = jsonRoot.getAsJsonArray("libraries");
-        String[] unusedOs = getOperatingSystemsNamesInverse();
+        return classpathURIs;
+    }
 
-        for (JsonElement libraryElement : librariesArray) {
-            JsonObject libraryObject = libraryElement.getAsJsonObject();
-            JsonObject downloads = libraryObject.getAsJsonObject("downloads");
+    private record NativeLibrary(VersionProfile.Download download, List<String> exclude) {}
 
-            if (downloads != null && downloads.has("artifact")) {
-                JsonObject artifact = downloads.getAsJsonObject("artifact");
-                String url = artifact.get("url").getAsString();
+    /**
+     * Jars whose native libraries are unpacked into the natives directory: old-style {@code natives}
+     * classifiers and, since 1.19, the {@code natives-*} artifacts themselves.
+     */
+    private List<NativeLibrary> getNativeLibraries() {
 
-                if (!url.contains(unusedOs[0]) && !url.contains(unusedOs[1]) && !url.contains("arm")) {
-                    librariesURIs.put(URI.create(url), artifact.get("sha1").getAsString());
-                }
+        List<NativeLibrary> nativeLibraries = new ArrayList<>();
+        Platform platform = Platform.current();
+
+        for (VersionProfile.Library library : getVersionProfile().libraries()) {
+            if (!platform.allows(library.rules())) {
+                continue;
+            }
 
+            String classifier = platform.nativesClassifier(library);
+            VersionProfile.Download download = classifier != null ? library.classifiers().get(classifier)
+                    : Platform.isNatives(library) && platform.matchesNativesArch(library) ? library.artifact() : null;
+            if (download != null) {
+                nativeLibraries.add(new NativeLibrary(download, library.extractExclude()));
             }
         }
 
-        return librariesURIs;
+        return nativeLibraries;
     }
 
+    private Map<URI, String> getLibrariesURIs()  {
+        Map<URI, String> librariesURIs = new LinkedHashMap<>(getClasspathURIs());
+        getNativeLibraries().forEach(library -> librariesURIs.put(URI.create(library.download().url()), library.download().sha1()));
+        return librariesURIs;
+    }
 
-    private String[] getOperatingSystemsNamesInverse() {
-        String osName = System.getProperty("os.name").toLowerCase();
+    private void extractNatives() {
+        List<NativesExtractor.NativeJar> jars = new ArrayList<>();
+        for (NativeLibrary library : getNativeLibraries()) {
+            Path jarPath = LIBRARIES.resolve(URI.create(library.download().url()).getPath().substring(1));
+            jars.add(new NativesExtractor.NativeJar(jarPath, library.download().sha1(), library.exclude()));
+        }
 
-        if (osName.contains("win")) {
-            return new String[]{"macos", "linux"};
-        } else if (osName.contains("mac")) {
-            return new String[]{"windows", "linux"};
-        } else if (osName.contains("nix") || osName.contains("nux") || osName.contains("aix")) {
-            return new String[]{"windows", "macos"};
-        } else {
-            return new String[]{"unknown"};
+        try {
+            NativesExtractor.extract(jars, VERSION.resolve("natives"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -0,0 +1,169 @@
+package launcher;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import logging.SimpleLogger;
+import network.DownloadManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Unpacks native libraries into {@code versions/<id>/natives}. The result is recorded in a marker file
+ * under a hash of the source jars' SHA-1s and exclusions, so extraction is skipped entirely while neither
+ * changed and every extracted file is still there.
+ */
+public final class NativesExtractor {
+
+    public record NativeJar(Path path, String sha1, List<String> exclude) {}
+
+    private record Marker(String hash, List<String> files) {}
+
+    private static final SimpleLogger logger = new SimpleLogger(true);
+    private static final Gson gson = new Gson();
+    private static final String MARKER = ".natives.json";
+
+    private NativesExtractor() {}
+
+    public static void extract(List<NativeJar> jars, Path nativesDirectory) throws IOException {
+
+        String hash = hash(jars);
+        Path markerPath = nativesDirectory.resolve(MARKER);
+        Marker marker = readMarker(markerPath);
+
+        if (marker != null && marker.hash().equals(hash) && marker.files().stream().allMatch(file -> Files.isRegularFile(nativesDirectory.resolve(file)))) {
+            return;
+        }
+
+        Files.createDirectories(nativesDirectory);
+        if (marker != null) {
+            for (String file : marker.files()) {
+                Files.deleteIfExists(nativesDirectory.resolve(file));
+            }
+        }
+        Files.deleteIfExists(markerPath);
+
+        List<String> extracted = new ArrayList<>();
+        List<Future<List<String>>> results = new ArrayList<>(jars.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            ConcurrentHashMap<String, Boolean> claimed = new ConcurrentHashMap<>();
+            for (NativeJar jar : jars) {
+                results.add(executor.submit(() -> extractJar(jar, nativesDirectory, claimed)));
+            }
+            for (Future<List<String>> result : results) {
+                extracted.addAll(result.get());
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+
+        extracted.sort(Comparator.naturalOrder());
+        writeMarker(markerPath, new Marker(hash, extracted));
+        logger.info("Extracted " + extracted.size() + " native files to " + nativesDirectory);
+    }
+
+    /**
+     * Streams every non-excluded file entry of {@code jar} straight to its destination. Entries are
+     * flattened to their file name, which is where {@code java.library.path} lookups expect them and keeps
+     * entry names from escaping the directory.
+     */
+    private static List<String> extractJar(NativeJar jar, Path nativesDirectory, ConcurrentHashMap<String, Boolean> claimed) throws IOException {
+
+        List<String> extracted = new ArrayList<>();
+        try (ZipFile zipFile = new ZipFile(jar.path().toFile())) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory() || isExcluded(entry.getName(), jar.exclude())) {
+                    continue;
+                }
+
+                String fileName = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+                if (fileName.isEmpty() || claimed.putIfAbsent(fileName, Boolean.TRUE) != null) {
+                    continue;
+                }
+
+                try (InputStream input = zipFile.getInputStream(entry)) {
+                    Files.copy(input, nativesDirectory.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+                }
+                extracted.add(fileName);
+            }
+        }
+        return extracted;
+    }
+
+    private static boolean isExcluded(String entryName, List<String> exclude) {
+        if (entryName.startsWith("META-INF/")) {
+            return true;
+        }
+        for (String prefix : exclude) {
+            if (entryName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String hash(List<NativeJar> jars) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
+            jars.stream()
+                    .sorted(Comparator.comparing(jar -> jar.path().toString()))
+                    .forEach(jar -> messageDigest.update((jar.path() + "|" + jar.sha1() + "|" + String.join(",", jar.exclude()) + "\n").getBytes(StandardCharsets.UTF_8)));
+            return HexFormat.of().formatHex(messageDigest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Marker readMarker(Path markerPath) {
+        if (!Files.exists(markerPath)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(markerPath)) {
+            Marker marker = gson.fromJson(reader, Marker.class);
+            return marker != null && marker.hash() != null && marker.files() != null ? marker : null;
+        } catch (IOException | JsonParseException e) {
+            return null;
+        }
+    }
+
+    private static void writeMarker(Path markerPath, Marker marker) {
+        Path tempPath = markerPath.resolveSibling(MARKER + ".part");
+        try (Writer writer = Files.newBufferedWriter(tempPath)) {
+            gson.toJson(marker, writer);
+        } catch (IOException e) {
+            logger.error(e);
+            return;
+        }
+        try {
+            DownloadManager.commitPartFile(tempPath, markerPath);
+        } catch (IOException e) {
+            logger.error(e);
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package launcher;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The operating system and architecture as named by Mojang's version JSON ({@code windows}, {@code osx},
+ * {@code linux}; {@code x86}, {@code x86_64}, {@code arm64}), used to evaluate library and argument rules.
+ */
+public record Platform(String osName, String arch, String osVersion) {
+
+    private static final Platform CURRENT = detect();
+
+    public static Platform current() {
+        return CURRENT;
+    }
+
+    private static Platform detect() {
+        String os = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+        String osName = os.contains("win") ? "windows" : os.contains("mac") ? "osx" : "linux";
+
+        String arch = switch (System.getProperty("os.arch").toLowerCase(Locale.ROOT)) {
+            case "amd64", "x86_64" -> "x86_64";
+            case "aarch64", "arm64" -> "arm64";
+            case "x86", "i386", "i486", "i586", "i686" -> "x86";
+            default -> System.getProperty("os.arch").toLowerCase(Locale.ROOT);
+        };
+
+        return new Platform(osName, arch, System.getProperty("os.version"));
+    }
+
+    public boolean is64Bit() {
+        return arch.equals("x86_64") || arch.equals("arm64");
+    }
+
+    /**
+     * Evaluates rules the way the official launcher does: no rules allows, otherwise the last matching rule
+     * decides and nothing matching disallows. Features are all considered off.
+     */
+    public boolean allows(List<VersionProfile.Rule> rules) {
+        if (rules.isEmpty()) {
+            return true;
+        }
+
+        boolean allowed = false;
+        for (VersionProfile.Rule rule : rules) {
+            if (matches(rule)) {
+                allowed = "allow".equals(rule.action());
+            }
+        }
+        return allowed;
+    }
+
+    private boolean matches(VersionProfile.Rule rule) {
+        if (rule.osName() != null && !rule.osName().equals(osName)) {
+            return false;
+        }
+        if (rule.osArch() != null && !rule.osArch().equals(arch)) {
+            return false;
+        }
+        if (rule.osVersion() != null && !Pattern.compile(rule.osVersion()).matcher(osVersion).find()) {
+            return false;
+        }
+        for (Map.Entry<String, Boolean> feature : rule.features().entrySet()) {
+            if (feature.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the classifier holding this platform's natives for an old-style library with a {@code natives}
+     * map, with {@code ${arch}} expanded to 32 or 64, or null when the library has none for this OS.
+     */
+    public String nativesClassifier(VersionProfile.Library library) {
+        String classifier = library.natives().get(osName);
+        return classifier == null ? null : classifier.replace("${arch}", is64Bit() ? "64" : "32");
+    }
+
+    /**
+     * Whether a library such as {@code org.lwjgl:lwjgl:3.3.1:natives-windows-arm64} is built for this
+     * architecture. Since 1.19 these only carry an OS rule, so the architecture is read from the classifier;
+     * a classifier without one is the default x86_64 build.
+     */
+    public boolean matchesNativesArch(VersionProfile.Library library) {
+        if (!isNatives(library)) {
+            return true;
+        }
+
+        String classifier = library.name().split(":")[3];
+        if (classifier.endsWith("-arm64") || classifier.endsWith("-aarch64")) {
+            return arch.equals("arm64");
+        }
+        if (classifier.endsWith("-x86")) {
+            return arch.equals("x86");
+        }
+        return arch.equals("x86_64");
+    }
+
+    public static boolean isNatives(VersionProfile.Library library) {
+        String[] coordinates = library.name().split(":");
+        return coordinates.length >= 4 && coordinates[3].startsWith("natives-");
+    }
+
+}
@@ -0,0 +1,167 @@
+package launcher;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import logging.SimpleLogger;
+import network.DownloadManager;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+public final class VersionManifest {
+
+    public record Entry(String id, String type, URI url) {}
+
+    private record Validators(String etag, String lastModified) {}
+
+    private static final SimpleLogger logger = new SimpleLogger(true);
+    private static final Gson gson = new Gson();
+
+    private static final Path CACHE = DownloadManager.getCacheRoot().resolve("version_manifest.json");
+    private static final Path VALIDATORS = DownloadManager.getCacheRoot().resolve("version_manifest.validators.json");
+    private static final Duration MAX_AGE = Duration.ofMinutes(5);
+
+    private static volatile VersionManifest instance;
+    private static volatile long loadedAt;
+
+    private final String latestRelease;
+    private final String latestSnapshot;
+    private final Map<String, Entry> versions;
+
+    private VersionManifest(JsonObject root) {
+        JsonObject latest = root.getAsJsonObject("latest");
+        this.latestRelease = latest.get("release").getAsString();
+        this.latestSnapshot = latest.get("snapshot").getAsString();
+
+        Map<String, Entry> versions = new LinkedHashMap<>();
+        for (JsonElement element : root.getAsJsonArray("versions")) {
+            JsonObject version = element.getAsJsonObject();
+            String id = version.get("id").getAsString();
+            versions.put(id, new Entry(id, version.get("type").getAsString(), URI.create(version.get("url").getAsString())));
+        }
+        this.versions = Collections.unmodifiableMap(versions);
+    }
+
+    public String getLatestRelease() {
+        return latestRelease;
+    }
+
+    public String getLatestSnapshot() {
+        return latestSnapshot;
+    }
+
+    public Optional<Entry> find(String id) {
+        return Optional.ofNullable(versions.get(id));
+    }
+
+    public Collection<Entry> getVersions() {
+        return versions.values();
+    }
+
+    /**
+     * Returns the manifest, revalidating it at most once every {@code MAX_AGE} so that a long-running process
+     * sees new versions. The copy in {@code cache/} is revalidated with ETag / If-Modified-Since and served as
+     * is when the server cannot be reached.
+     */
+    public static VersionManifest get(URI manifestURI) throws IOException {
+        VersionManifest manifest = instance;
+        if (manifest == null || isStale()) {
+            synchronized (VersionManifest.class) {
+                manifest = instance;
+                if (manifest == null || isStale()) {
+                    manifest = instance = load(manifestURI);
+                    loadedAt = System.nanoTime();
+                }
+            }
+        }
+        return manifest;
+    }
+
+    private static boolean isStale() {
+        return System.nanoTime() - loadedAt > MAX_AGE.toNanos();
+    }
+
+    private static VersionManifest load(URI manifestURI) throws IOException {
+
+        Validators validators = readValidators();
+        HttpRequest.Builder request = HttpRequest.newBuilder(manifestURI).timeout(Duration.ofSeconds(10)).GET();
+        if (Files.exists(CACHE) && validators != null) {
+            if (validators.etag() != null) {
+                request.header("If-None-Match", validators.etag());
+            }
+            if (validators.lastModified() != null) {
+                request.header("If-Modified-Since", validators.lastModified());
+            }
+        }
+
+        try {
+            HttpResponse<String> response = DownloadManager.getHttpClient().send(request.build(), HttpResponse.BodyHandlers.ofString());
+
+            if (response.statusCode() == 200) {
+                VersionManifest manifest = new VersionManifest(gson.fromJson(response.body(), JsonObject.class));
+                store(response.body(), new Validators(response.headers().firstValue("ETag").orElse(null),
+                        response.headers().firstValue("Last-Modified").orElse(null)));
+                return manifest;
+            }
+            if (response.statusCode() != 304) {
+                logger.warn("Version manifest request returned HTTP " + response.statusCode() + ", using the cached copy.");
+            }
+        } catch (IOException | JsonParseException e) {
+            logger.warn("Could not fetch the version manifest (" + e.getMessage() + "), using the cached copy.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+
+        if (!Files.exists(CACHE)) {
+            throw new IOException("Version manifest is unavailable and there is no cached copy in " + CACHE);
+        }
+        try (Reader reader = Files.newBufferedReader(CACHE)) {
+            return new VersionManifest(gson.fromJson(reader, JsonObject.class));
+        }
+    }
+
+    private static Validators readValidators() {
+        if (!Files.exists(VALIDATORS)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(VALIDATORS)) {
+            return gson.fromJson(reader, Validators.class);
+        } catch (IOException | JsonParseException e) {
+            return null;
+        }
+    }
+
+    private static void store(String body, Validators validators) {
+        try {
+            Files.createDirectories(CACHE.toAbsolutePath().getParent());
+
+            Path tempPath = CACHE.resolveSibling(CACHE.getFileName() + ".part");
+            Files.writeString(tempPath, body);
+            DownloadManager.commitPartFile(tempPath, CACHE);
+
+            Path tempValidators = VALIDATORS.resolveSibling(VALIDATORS.getFileName() + ".part");
+            try (Writer writer = Files.newBufferedWriter(tempValidators)) {
+                gson.toJson(validators, writer);
+            }
+            DownloadManager.commitPartFile(tempValidators, VALIDATORS);
+        } catch (IOException e) {
+            logger.error(e);
+        }
+    }
+
+}
@@ -0,0 +1,331 @@
+package launcher;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public record VersionProfile(String id, String type, String mainClass, String assets, AssetIndex assetIndex,
+                             Map<String, Download> downloads, List<Library> libraries,
+                             List<Argument> gameArguments, List<Argument> jvmArguments,
+                             String legacyArguments, JavaVersion javaVersion) {
+
+    public record Download(String url, String sha1, long size, String path) {}
+
+    public record AssetIndex(String id, String url, String sha1, long size) {}
+
+    public record JavaVersion(String component, int majorVersion) {}
+
+    public record Rule(String action, String osName, String osArch, String osVersion, Map<String, Boolean> features) {}
+
+    public record Library(String name, Download artifact, Map<String, Download> classifiers, Map<String, String> natives,
+                          List<Rule> rules, List<String> extractExclude) {}
+
+    public record Argument(List<String> values, List<Rule> rules) {}
+
+    public Download client() {
+        return downloads.get("client");
+    }
+
+    public static VersionProfile fromJson(JsonObject root) {
+
+        Map<String, Download> downloads = new LinkedHashMap<>();
+        if (root.has("downloads")) {
+            root.getAsJsonObject("downloads").entrySet().forEach(entry -> downloads.put(entry.getKey(), download(entry.getValue().getAsJsonObject())));
+        }
+
+        List<Library> libraries = new ArrayList<>();
+        if (root.has("libraries")) {
+            for (JsonElement element : root.getAsJsonArray("libraries")) {
+                libraries.add(library(element.getAsJsonObject()));
+            }
+        }
+
+        List<Argument> gameArguments = new ArrayList<>();
+        List<Argument> jvmArguments = new ArrayList<>();
+        if (root.has("arguments")) {
+            JsonObject arguments = root.getAsJsonObject("arguments");
+            if (arguments.has("game")) {
+                arguments.getAsJsonArray("game").forEach(element -> gameArguments.add(argument(element)));
+            }
+            if (arguments.has("jvm")) {
+                arguments.getAsJsonArray("jvm").forEach(element -> jvmArguments.add(argument(element)));
+            }
+        }
+
+        AssetIndex assetIndex = null;
+        if (root.has("assetIndex")) {
+            JsonObject index = root.getAsJsonObject("assetIndex");
+            assetIndex = new AssetIndex(string(index, "id"), string(index, "url"), string(index, "sha1"), number(index, "size"));
+        }
+
+        JavaVersion javaVersion = null;
+        if (root.has("javaVersion")) {
+            JsonObject java = root.getAsJsonObject("javaVersion");
+            javaVersion = new JavaVersion(string(java, "component"), (int) number(java, "majorVersion"));
+        }
+
+        return new VersionProfile(string(root, "id"), string(root, "type"), string(root, "mainClass"), string(root, "assets"),
+                assetIndex, Map.copyOf(downloads), List.copyOf(libraries), List.copyOf(gameArguments), List.copyOf(jvmArguments),
+                string(root, "minecraftArguments"), javaVersion);
+    }
+
+    private static Library library(JsonObject object) {
+
+        Download artifact = null;
+        Map<String, Download> classifiers = new LinkedHashMap<>();
+        if (object.has("downloads")) {
+            JsonObject downloads = object.getAsJsonObject("downloads");
+            if (downloads.has("artifact")) {
+                artifact = download(downloads.getAsJsonObject("artifact"));
+            }
+            if (downloads.has("classifiers")) {
+                downloads.getAsJsonObject("classifiers").entrySet().forEach(entry -> classifiers.put(entry.getKey(), download(entry.getValue().getAsJsonObject())));
+            }
+        }
+
+        Map<String, String> natives = new LinkedHashMap<>();
+        if (object.has("natives")) {
+            object.getAsJsonObject("natives").entrySet().forEach(entry -> natives.put(entry.getKey(), entry.getValue().getAsString()));
+        }
+
+        List<String> extractExclude = new ArrayList<>();
+        if (object.has("extract") && object.getAsJsonObject("extract").has("exclude")) {
+            object.getAsJsonObject("extract").getAsJsonArray("exclude").forEach(element -> extractExclude.add(element.getAsString()));
+        }
+
+        return new Library(string(object, "name"), artifact, Map.copyOf(classifiers), Map.copyOf(natives),
+                rules(object.getAsJsonArray("rules")), List.copyOf(extractExclude));
+    }
+
+    private static Argument argument(JsonElement element) {
+        if (element.isJsonPrimitive()) {
+            return new Argument(List.of(element.getAsString()), List.of());
+        }
+
+        JsonObject object = element.getAsJsonObject();
+        List<String> values = new ArrayList<>();
+        JsonElement value = object.get("value");
+        if (value.isJsonArray()) {
+            value.getAsJsonArray().forEach(item -> values.add(item.getAsString()));
+        } else {
+            values.add(value.getAsString());
+        }
+        return new Argument(List.copyOf(values), rules(object.getAsJsonArray("rules")));
+    }
+
+    private static List<Rule> rules(JsonArray array) {
+        if (array == null) {
+            return List.of();
+        }
+
+        List<Rule> rules = new ArrayList<>();
+        for (JsonElement element : array) {
+            JsonObject rule = element.getAsJsonObject();
+            JsonObject os = rule.has("os") ? rule.getAsJsonObject("os") : new JsonObject();
+            Map<String, Boolean> features = new LinkedHashMap<>();
+            if (rule.has("features")) {
+                rule.getAsJsonObject("features").entrySet().forEach(entry -> features.put(entry.getKey(), entry.getValue().getAsBoolean()));
+            }
+            rules.add(new Rule(string(rule, "action"), string(os, "name"), string(os, "arch"), string(os, "version"), Map.copyOf(features)));
+        }
+        return List.copyOf(rules);
+    }
+
+    private static Download download(JsonObject object) {
+        return new Download(string(object, "url"), string(object, "sha1"), number(object, "size"), string(object, "path"));
+    }
+
+    private static String string(JsonObject object, String member) {
+        JsonElement element = object.get(member);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+
+    private static long number(JsonObject object, String member) {
+        JsonElement element = object.get(member);
+        return element == null || element.isJsonNull() ? 0 : element.getAsLong();
+    }
+
+    public void write(DataOutput out) throws IOException {
+        writeString(out, id);
+        writeString(out, type);
+        writeString(out, mainClass);
+        writeString(out, assets);
+        out.writeBoolean(assetIndex != null);
+        if (assetIndex != null) {
+            writeString(out, assetIndex.id());
+            writeString(out, assetIndex.url());
+            writeString(out, assetIndex.sha1());
+            out.writeLong(assetIndex.size());
+        }
+        writeDownloads(out, downloads);
+        out.writeInt(libraries.size());
+        for (Library library : libraries) {
+            writeString(out, library.name());
+            out.writeBoolean(library.artifact() != null);
+            if (library.artifact() != null) {
+                writeDownload(out, library.artifact());
+            }
+            writeDownloads(out, library.classifiers());
+            out.writeInt(library.natives().size());
+            for (Map.Entry<String, String> entry : library.natives().entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+            writeRules(out, library.rules());
+            writeStrings(out, library.extractExclude());
+        }
+        writeArguments(out, gameArguments);
+        writeArguments(out, jvmArguments);
+        writeString(out, legacyArguments);
+        out.writeBoolean(javaVersion != null);
+        if (javaVersion != null) {
+            writeString(out, javaVersion.component());
+            out.writeInt(javaVersion.majorVersion());
+        }
+    }
+
+    public static VersionProfile read(DataInput in) throws IOException {
+        String id = readString(in);
+        String type = readString(in);
+        String mainClass = readString(in);
+        String assets = readString(in);
+        AssetIndex assetIndex = in.readBoolean() ? new AssetIndex(readString(in), readString(in), readString(in), in.readLong()) : null;
+        Map<String, Download> downloads = readDownloads(in);
+
+        int libraryCount = in.readInt();
+        List<Library> libraries = new ArrayList<>(libraryCount);
+        for (int i = 0; i < libraryCount; i++) {
+            String name = readString(in);
+            Download artifact = in.readBoolean() ? readDownload(in) : null;
+            Map<String, Download> classifiers = readDownloads(in);
+            int nativeCount = in.readInt();
+            Map<String, String> natives = new LinkedHashMap<>();
+            for (int j = 0; j < nativeCount; j++) {
+                natives.put(in.readUTF(), in.readUTF());
+            }
+            libraries.add(new Library(name, artifact, classifiers, Map.copyOf(natives), readRules(in), readStrings(in)));
+        }
+
+        List<Argument> gameArguments = readArguments(in);
+        List<Argument> jvmArguments = readArguments(in);
+        String legacyArguments = readString(in);
+        JavaVersion javaVersion = in.readBoolean() ? new JavaVersion(readString(in), in.readInt()) : null;
+
+        return new VersionProfile(id, type, mainClass, assets, assetIndex, downloads, List.copyOf(libraries),
+                gameArguments, jvmArguments, legacyArguments, javaVersion);
+    }
+
+    private static void writeDownload(DataOutput out, Download download) throws IOException {
+        writeString(out, download.url());
+        writeString(out, download.sha1());
+        out.writeLong(download.size());
+        writeString(out, download.path());
+    }
+
+    private static Download readDownload(DataInput in) throws IOException {
+        return new Download(readString(in), readString(in), in.readLong(), readString(in));
+    }
+
+    private static void writeDownloads(DataOutput out, Map<String, Download> downloads) throws IOException {
+        out.writeInt(downloads.size());
+        for (Map.Entry<String, Download> entry : downloads.entrySet()) {
+            out.writeUTF(entry.getKey());
+            writeDownload(out, entry.getValue());
+        }
+    }
+
+    private static Map<String, Download> readDownloads(DataInput in) throws IOException {
+        int count = in.readInt();
+        Map<String, Download> downloads = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            downloads.put(in.readUTF(), readDownload(in));
+        }
+        return Map.copyOf(downloads);
+    }
+
+    private static void writeRules(DataOutput out, List<Rule> rules) throws IOException {
+        out.writeInt(rules.size());
+        for (Rule rule : rules) {
+            writeString(out, rule.action());
+            writeString(out, rule.osName());
+            writeString(out, rule.osArch());
+            writeString(out, rule.osVersion());
+            out.writeInt(rule.features().size());
+            for (Map.Entry<String, Boolean> feature : rule.features().entrySet()) {
+                out.writeUTF(feature.getKey());
+                out.writeBoolean(feature.getValue());
+            }
+        }
+    }
+
+    private static List<Rule> readRules(DataInput in) throws IOException {
+        int count = in.readInt();
+        List<Rule> rules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String action = readString(in);
+            String osName = readString(in);
+            String osArch = readString(in);
+            String osVersion = readString(in);
+            int featureCount = in.readInt();
+            Map<String, Boolean> features = new LinkedHashMap<>();
+            for (int j = 0; j < featureCount; j++) {
+                features.put(in.readUTF(), in.readBoolean());
+            }
+            rules.add(new Rule(action, osName, osArch, osVersion, Map.copyOf(features)));
+        }
+        return List.copyOf(rules);
+    }
+
+    private static void writeArguments(DataOutput out, List<Argument> arguments) throws IOException {
+        out.writeInt(arguments.size());
+        for (Argument argument : arguments) {
+            writeStrings(out, argument.values());
+            writeRules(out, argument.rules());
+        }
+    }
+
+    private static List<Argument> readArguments(DataInput in) throws IOException {
+        int count = in.readInt();
+        List<Argument> arguments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            arguments.add(new Argument(readStrings(in), readRules(in)));
+        }
+        return List.copyOf(arguments);
+    }
+
+    private static void writeStrings(DataOutput out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static List<String> readStrings(DataInput in) throws IOException {
+        int count = in.readInt();
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(in.readUTF());
+        }
+        return List.copyOf(strings);
+    }
+
+    private static void writeString(DataOutput out, String string) throws IOException {
+        out.writeBoolean(string != null);
+        if (string != null) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+}
@@ -0,0 +1,115 @@
+package launcher;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import logging.SimpleLogger;
+import network.DownloadManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class VersionProfileCache {
+
+    private record Cached(long size, long modified, VersionProfile profile) {}
+
+    private static final SimpleLogger logger = new SimpleLogger(true);
+    private static final Gson gson = new Gson();
+
+    private static final int SNAPSHOT_MAGIC = 0x48435650;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int MAX_ENTRIES = 8;
+
+    private static final Map<Path, Cached> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Cached> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private VersionProfileCache() {}
+
+    /**
+     * Returns the parsed profile for a version JSON. The profile is taken from memory when the JSON is
+     * unchanged, then from the {@code .profile} snapshot next to it, and only parsed from JSON as a last resort.
+     */
+    public static VersionProfile load(Path versionJson) throws IOException {
+
+        Path key = versionJson.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+
+        synchronized (cache) {
+            Cached cached = cache.get(key);
+            if (cached != null && cached.size() == size && cached.modified() == modified) {
+                return cached.profile();
+            }
+        }
+
+        Path snapshot = snapshotPath(key);
+        VersionProfile profile = readSnapshot(snapshot, size, modified);
+        if (profile == null) {
+            try (Reader reader = Files.newBufferedReader(key)) {
+                profile = VersionProfile.fromJson(gson.fromJson(reader, JsonObject.class));
+            }
+            writeSnapshot(snapshot, size, modified, profile);
+        }
+
+        synchronized (cache) {
+            cache.put(key, new Cached(size, modified, profile));
+        }
+        return profile;
+    }
+
+    public static void invalidate(Path versionJson) {
+        synchronized (cache) {
+            cache.remove(versionJson.toAbsolutePath().normalize());
+        }
+    }
+
+    private static Path snapshotPath(Path versionJson) {
+        String fileName = versionJson.getFileName().toString();
+        return versionJson.resolveSibling(fileName.substring(0, fileName.length() - ".json".length()) + ".profile");
+    }
+
+    private static VersionProfile readSnapshot(Path snapshot, long size, long modified) {
+        if (!Files.exists(snapshot)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION || in.readLong() != size || in.readLong() != modified) {
+                return null;
+            }
+            return VersionProfile.read(in);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable profile snapshot " + snapshot);
+            return null;
+        }
+    }
+
+    private static void writeSnapshot(Path snapshot, long size, long modified, VersionProfile profile) {
+        Path tempPath = snapshot.resolveSibling(snapshot.getFileName() + ".part");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(size);
+                out.writeLong(modified);
+                profile.write(out);
+            }
+            DownloadManager.commitPartFile(tempPath, snapshot);
+        } catch (IOException e) {
+            logger.error(e);
+        }
+    }
+
+}
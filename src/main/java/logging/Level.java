@@ -0,0 +1,8 @@
+package logging;
+
+public enum Level {
+    ERROR,
+    WARN,
+    INFO,
+    DEBUG
+}
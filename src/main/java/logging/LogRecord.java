@@ -0,0 +1,5 @@
+package logging;
+
+import java.time.Instant;
+
+record LogRecord(Level level, Instant time, boolean colored, StackWalker.StackFrame caller, String message, Throwable throwable) {}
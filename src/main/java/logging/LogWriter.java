@@ -0,0 +1,167 @@
+package logging;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single background thread that drains log records from a {@link RingBuffer}, formats them and writes them
+ * to the console and, when configured, a rotating file. Callers only pay for enqueuing a record.
+ * After shutdown has begun records are written synchronously so that nothing logged by other shutdown
+ * hooks is lost.
+ */
+final class LogWriter {
+
+    private static final int CAPACITY = 8192;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final String ERROR = "\033[31m";
+    private static final String WARN = "\033[33m";
+    private static final String INFO = "\033[34m";
+    private static final String DEFAULT = "\033[0m";
+
+    private final RingBuffer<LogRecord> buffer = new RingBuffer<>(CAPACITY);
+    private final PrintStream console = System.out;
+    private final Thread thread;
+    private volatile boolean parked = false;
+    private volatile boolean closed = false;
+    private RotatingFile file;
+
+    LogWriter() {
+        thread = Thread.ofPlatform().name("HCLILauncher-log-writer").daemon().unstarted(this::run);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    void publish(LogRecord record) {
+        if (closed) {
+            synchronized (this) {
+                write(record);
+                flush();
+            }
+            return;
+        }
+
+        while (!buffer.offer(record)) {
+            LockSupport.unpark(thread);
+            Thread.yield();
+        }
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    synchronized void setFile(Path path, long maxBytes, int maxFiles) throws IOException {
+        RotatingFile previous = file;
+        file = new RotatingFile(path, maxBytes, maxFiles);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            LogRecord record = buffer.poll();
+            if (record != null) {
+                synchronized (this) {
+                    write(record);
+                }
+                continue;
+            }
+
+            synchronized (this) {
+                flush();
+            }
+            if (closed) {
+                return;
+            }
+
+            parked = true;
+            if (buffer.isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            parked = false;
+        }
+    }
+
+    private void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            if (!thread.isAlive()) {
+                LogRecord record;
+                while ((record = buffer.poll()) != null) {
+                    write(record);
+                }
+            }
+            flush();
+        }
+    }
+
+    private void write(LogRecord record) {
+        String line = format(record);
+        if (record.colored()) {
+            console.println(color(record.level()) + line + DEFAULT);
+        } else {
+            console.println(line);
+        }
+
+        if (file != null) {
+            try {
+                file.write(line);
+            } catch (IOException e) {
+                console.println("Could not write to the log file: " + e.getMessage());
+                file = null;
+            }
+        }
+    }
+
+    private void flush() {
+        console.flush();
+        if (file != null) {
+            try {
+                file.flush();
+            } catch (IOException e) {
+                console.println("Could not write to the log file: " + e.getMessage());
+                file = null;
+            }
+        }
+    }
+
+    private static String format(LogRecord record) {
+        StringBuilder builder = new StringBuilder(128);
+        if (record.throwable() != null) {
+            builder.append('\n');
+        }
+        builder.append(record.time().toString().replace('T', ' ').replace("Z", "")).append(" [HCLILauncher] [").append(record.level()).append("] [");
+        if (record.caller() != null) {
+            builder.append(record.caller().getDeclaringClass().getSimpleName()).append('.').append(record.caller().getMethodName());
+        }
+        builder.append("] ").append(record.message());
+        if (record.throwable() != null) {
+            builder.append('\n');
+            for (StackTraceElement stackTraceElement : record.throwable().getStackTrace()) {
+                builder.append(stackTraceElement).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String color(Level level) {
+        return switch (level) {
+            case ERROR -> ERROR;
+            case WARN -> WARN;
+            case INFO -> INFO;
+            case DEBUG -> DEFAULT;
+        };
+    }
+
+}
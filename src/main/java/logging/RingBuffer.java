@@ -0,0 +1,71 @@
+package logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer. Every slot carries a sequence number
+ * telling whether it is free for the producer that claimed the matching ticket or filled for the consumer,
+ * so producers only contend on one compare-and-set and never block each other.
+ */
+final class RingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head = 0;
+
+    RingBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Returns false when the buffer is full.
+     */
+    boolean offer(E element) {
+        while (true) {
+            long ticket = tail.get();
+            int index = (int) ticket & mask;
+            long sequence = sequences.getAcquire(index);
+            if (sequence == ticket) {
+                if (tail.compareAndSet(ticket, ticket + 1)) {
+                    elements.setPlain(index, element);
+                    sequences.setRelease(index, ticket + 1);
+                    return true;
+                }
+            } else if (sequence < ticket) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Consumer side only. Returns null when nothing is ready.
+     */
+    E poll() {
+        int index = (int) head & mask;
+        if (sequences.getAcquire(index) != head + 1) {
+            return null;
+        }
+        E element = elements.getPlain(index);
+        elements.setPlain(index, null);
+        sequences.setRelease(index, head + mask + 1);
+        head++;
+        return element;
+    }
+
+    boolean isEmpty() {
+        return sequences.getAcquire((int) head & mask) != head + 1;
+    }
+
+}
@@ -1,69 +1,87 @@
 package logging;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Instant;
-import java.time.LocalDateTime;
+import java.util.function.Supplier;
 
 public class SimpleLogger {
 
-    private String ERROR = "";
-    private String WARN = "";
-    private String INFO = "";
-    private String DEFAULT = "";
+    private static final StackWalker stackWalker = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+    private static final LogWriter writer = new LogWriter();
+    private static volatile Level level = Level.INFO;
 
-    public SimpleLogger() {}
+    private final boolean colored;
+
+    public SimpleLogger() {
+        this(false);
+    }
 
     public SimpleLogger(boolean colored) {
-        if (colored) {
-            ERROR = "\033[31m";
-            WARN = "\033[33m";
-            INFO = "\033[34m";
-            DEFAULT = "\033[0m";
-        }
+        this.colored = colored;
+    }
+
+    public static void setLevel(Level level) {
+        SimpleLogger.level = level;
+    }
+
+    /**
+     * Also writes every record, without colors, to {@code path}, rotating it once it reaches {@code maxBytes}
+     * and keeping {@code maxFiles} rotated files.
+     */
+    public static void setLogFile(Path path, long maxBytes, int maxFiles) throws IOException {
+        writer.setFile(path, maxBytes, maxFiles);
     }
 
-    private String getCallingClassName() {
-        StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-        String className = "";
-        try {
-            className = Class.forName(stackTrace[3].getClassName()).getSimpleName();
-        } catch (ClassNotFoundException e) {
-            error(e);
+    public boolean isEnabled(Level level) {
+        return level.compareTo(SimpleLogger.level) <= 0;
+    }
+
+    public void debug(String msg) {
+        log(Level.DEBUG, msg, null);
+    }
+
+    public void debug(Supplier<String> msg) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, msg.get(), null);
         }
-        return className;
     }
 
-    private String getCallingMethodName() {
-        StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-        String methodName = "";
-        try {
-            methodName = stackTrace[3].getMethodName();
-        } catch (ArrayIndexOutOfBoundsException e) {
-            error(e);
+    public void info(String msg) {
+        log(Level.INFO, msg, null);
+    }
+
+    public void info(Supplier<String> msg) {
+        if (isEnabled(Level.INFO)) {
+            log(Level.INFO, msg.get(), null);
         }
-        return methodName;
     }
 
-    public synchronized void info(String msg) {
-        System.out.println(INFO + Instant.now().toString().replace('T', ' ').replace("Z", "") + " [HCLILauncher] [INFO] [" + getCallingClassName() + "." + getCallingMethodName() + "] " + msg + DEFAULT);
+    public void warn(String msg) {
+        log(Level.WARN, msg, null);
     }
 
-    public synchronized void warn(String msg) {
-        System.out.println(WARN + Instant.now().toString().replace('T', ' ').replace("Z", "") + " [HCLILauncher] [WARN] [" + getCallingClassName() + "." + getCallingMethodName() + "] " + msg + DEFAULT);
+    public void error(String msg) {
+        log(Level.ERROR, msg, null);
     }
 
-    public synchronized void error(String msg) {
-        System.out.println(ERROR + Instant.now().toString().replace('T', ' ').replace("Z", "") + " [HCLILauncher] [ERROR] [" + getCallingClassName() + "." + getCallingMethodName() + "] " + msg + DEFAULT);
+    public void error(Exception e) {
+        log(Level.ERROR, e.getMessage(), e);
     }
 
-    public synchronized void error(Exception e) {
-        StringBuilder errBuilder = new StringBuilder("\n");
-        errBuilder.append(ERROR).append(Instant.now().toString().replace('T', ' ').replace("Z", "")).append(" [HCLILauncher] [ERROR] [")
-                .append(getCallingClassName()).append(".").append(getCallingMethodName()).append("] ").append(e.getMessage()).append("\n");
-        for (StackTraceElement stackTraceElement : e.getStackTrace()) {
-            errBuilder.append(stackTraceElement).append("\n");
+    /**
+     * Records the caller by walking only as many frames as it takes to leave this class, and hands
+     * formatting and output to the writer thread.
+     */
+    private void log(Level level, String msg, Throwable throwable) {
+        if (!isEnabled(level)) {
+            return;
         }
-        errBuilder.append(DEFAULT);
-        System.out.println(errBuilder);
+        StackWalker.StackFrame caller = stackWalker.walk(frames -> frames
+                .dropWhile(frame -> frame.getDeclaringClass() == SimpleLogger.class)
+                .findFirst()
+                .orElse(null));
+        writer.publish(new LogRecord(level, Instant.now(), colored, caller, msg, throwable));
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,127 @@
+package network;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that adapts to the host it guards. Successful requests grow the limit additively
+ * (about one slot per window), failures halve it, and time-to-first-byte rising well above the best
+ * observed value shrinks it again, in the style of TCP Vegas. Growth that does not buy more throughput
+ * is rolled back at the end of each window.
+ */
+public final class AdaptiveLimiter {
+
+    private static final double BACKOFF_RATIO = 0.5;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final long LATENCY_SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final double THROUGHPUT_GAIN = 1.05;
+    private static final int MIN_WINDOW = 16;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    private double limit;
+    private int inFlight = 0;
+    private long minLatency = Long.MAX_VALUE;
+
+    private int windowCompleted = 0;
+    private long windowBytes = 0;
+    private long windowStart = System.nanoTime();
+    private double windowStartLimit;
+    private double lastThroughput = 0;
+
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+        this.windowStartLimit = initialLimit;
+    }
+
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                available.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess(long latencyNanos, long bytes) {
+        lock.lock();
+        try {
+            inFlight--;
+            minLatency = Math.min(minLatency, latencyNanos);
+
+            if (latencyNanos > minLatency * LATENCY_TOLERANCE + LATENCY_SLACK_NANOS) {
+                limit = Math.max(minLimit, limit - 1.0 / limit);
+            } else {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+
+            windowBytes += bytes;
+            if (++windowCompleted >= Math.max(MIN_WINDOW, (int) limit)) {
+                double elapsedSeconds = Math.max(1, System.nanoTime() - windowStart) / (double) TimeUnit.SECONDS.toNanos(1);
+                double throughput = windowBytes / elapsedSeconds;
+                if (limit > windowStartLimit && throughput < lastThroughput * THROUGHPUT_GAIN) {
+                    limit = windowStartLimit;
+                }
+                lastThroughput = throughput;
+                windowStartLimit = limit;
+                windowCompleted = 0;
+                windowBytes = 0;
+                windowStart = System.nanoTime();
+            }
+
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onFailure() {
+        lock.lock();
+        try {
+            inFlight--;
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            windowStartLimit = Math.min(windowStartLimit, limit);
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package network;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Global token bucket shared by every transfer. A limit of 0 disables it; otherwise readers sleep once
+ * they have consumed more than the configured bytes per second, with at most one second of burst.
+ */
+public final class BandwidthLimiter {
+
+    // keeps one second of elapsed nanoseconds times the rate within a long, about 9 GB/s
+    private static final long MAX_BYTES_PER_SECOND = Long.MAX_VALUE / TimeUnit.SECONDS.toNanos(1);
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile long bytesPerSecond;
+    private long tokens;
+    private long lastRefill = System.nanoTime();
+
+    public BandwidthLimiter(long bytesPerSecond) {
+        setLimit(bytesPerSecond);
+    }
+
+    public void setLimit(long bytesPerSecond) {
+        lock.lock();
+        try {
+            this.bytesPerSecond = Math.clamp(bytesPerSecond, 0, MAX_BYTES_PER_SECOND);
+            this.tokens = this.bytesPerSecond;
+            this.lastRefill = System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getLimit() {
+        return bytesPerSecond;
+    }
+
+    public void acquire(int bytes) throws InterruptedException {
+        long rate = bytesPerSecond;
+        if (rate <= 0) {
+            return;
+        }
+
+        long waitNanos;
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            // the bucket holds at most one second of tokens, so a longer idle time cannot refill more
+            long elapsed = Math.min(now - lastRefill, TimeUnit.SECONDS.toNanos(1));
+            long refill = elapsed * rate / TimeUnit.SECONDS.toNanos(1);
+            if (refill > 0) {
+                tokens = Math.min(rate, tokens + refill);
+                lastRefill = now;
+            }
+            tokens -= bytes;
+            waitNanos = tokens < 0 ? -tokens * TimeUnit.SECONDS.toNanos(1) / rate : 0;
+        } finally {
+            lock.unlock();
+        }
+
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package network;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What already exists under a download root, read in one walk before a batch starts. Lookups replace a
+ * {@code Files.exists} per file, and directories are created once each instead of a
+ * {@code Files.createDirectories} per file, which matters most on network filesystems.
+ */
+final class DiskLayout {
+
+    private final Map<Path, BasicFileAttributes> files = new ConcurrentHashMap<>();
+    private final Set<Path> directories = ConcurrentHashMap.newKeySet();
+
+    private DiskLayout() {}
+
+    static DiskLayout scan(Path root) throws IOException {
+        DiskLayout layout = new DiskLayout();
+        Files.createDirectories(root);
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                layout.directories.add(directory);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile()) {
+                    layout.files.put(file, attributes);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return layout;
+    }
+
+    /**
+     * Attributes of {@code file} as of the scan, or null when it did not exist then.
+     */
+    BasicFileAttributes attributes(Path file) {
+        return files.get(file);
+    }
+
+    /**
+     * Creates {@code directory} and any missing parents, skipping the ones that were there at the scan or
+     * were created through this layout already.
+     */
+    void createDirectories(Path directory) throws IOException {
+        if (directory == null || directories.contains(directory)) {
+            return;
+        }
+        createDirectories(directory.getParent());
+        try {
+            Files.createDirectory(directory);
+        } catch (FileAlreadyExistsException e) {
+            if (!Files.isDirectory(directory)) {
+                throw e;
+            }
+        }
+        directories.add(directory);
+    }
+
+}
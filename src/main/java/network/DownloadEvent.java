@@ -0,0 +1,44 @@
+package network;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One HTTP transfer as seen by Java Flight Recorder, e.g. {@code java -XX:StartFlightRecording ...}.
+ */
+@Name("hclilauncher.Download")
+@Label("Download")
+@Category({"HCLILauncher", "Network"})
+@Description("A single file transfer performed by the download engine")
+@StackTrace(false)
+final class DownloadEvent extends jdk.jfr.Event {
+
+    @Label("URI")
+    String uri;
+
+    @Label("Host")
+    String host;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Time To First Byte")
+    @Timespan
+    long timeToFirstByte;
+
+    @Label("Resumed")
+    boolean resumed;
+
+    @Label("Segmented")
+    boolean segmented;
+
+    @Label("Result")
+    String result;
+
+}
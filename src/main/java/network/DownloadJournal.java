@@ -0,0 +1,155 @@
+package network;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import logging.SimpleLogger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class DownloadJournal {
+
+    /**
+     * A transfer in progress. A sequential transfer has written its first {@code committed} bytes; a
+     * segmented one has a part file of {@code size} bytes in which only {@code ranges} are written.
+     */
+    record Entry(String uri, String sha1, long committed, long size, List<Range> ranges) {}
+
+    /**
+     * Bytes {@code first} up to, but not including, {@code end}.
+     */
+    record Range(long first, long end) {}
+
+    private static final SimpleLogger logger = new SimpleLogger(true);
+    private static final Gson gson = new Gson();
+    private static final long FLUSH_INTERVAL_MILLIS = 500;
+
+    private final Path journalPath;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty = false;
+    private volatile long lastFlush = 0;
+
+    DownloadJournal(Path journalPath) {
+        this.journalPath = journalPath;
+        load();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush));
+    }
+
+    /**
+     * Returns how many bytes of {@code partPath} can be kept for this transfer, or 0 when the part file
+     * is missing, shorter than recorded or belongs to a different URI or hash.
+     */
+    long resumeOffset(Path partPath, URI uri, String sha1) {
+        Entry entry = find(partPath, uri, sha1);
+        if (entry == null || entry.size() > 0) {
+            return 0;
+        }
+        try {
+            return Files.size(partPath) >= entry.committed() ? entry.committed() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the entry of a segmented transfer of this URI and hash whose part file still has its full
+     * size, or {@code null}.
+     */
+    Entry segmented(Path partPath, URI uri, String sha1) {
+        Entry entry = find(partPath, uri, sha1);
+        if (entry == null || entry.size() <= 0 || entry.ranges() == null) {
+            return null;
+        }
+        try {
+            return Files.size(partPath) == entry.size() ? entry : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Entry find(Path partPath, URI uri, String sha1) {
+        Entry entry = entries.get(key(partPath));
+        if (entry == null || !entry.uri().equals(uri.toString()) || !String.valueOf(entry.sha1()).equals(String.valueOf(sha1))) {
+            return null;
+        }
+        return entry;
+    }
+
+    boolean contains(Path partPath) {
+        return entries.containsKey(key(partPath));
+    }
+
+    void checkpoint(Path partPath, URI uri, String sha1, long committed) {
+        put(partPath, new Entry(uri.toString(), sha1, committed, 0, List.of()));
+    }
+
+    void checkpoint(Path partPath, URI uri, String sha1, long size, List<Range> ranges) {
+        put(partPath, new Entry(uri.toString(), sha1, 0, size, List.copyOf(ranges)));
+    }
+
+    private void put(Path partPath, Entry entry) {
+        entries.put(key(partPath), entry);
+        dirty = true;
+        if (System.currentTimeMillis() - lastFlush >= FLUSH_INTERVAL_MILLIS) {
+            flush();
+        }
+    }
+
+    void remove(Path partPath) {
+        if (entries.remove(key(partPath)) != null) {
+            dirty = true;
+        }
+    }
+
+    synchronized void flush() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        lastFlush = System.currentTimeMillis();
+
+        Path tempPath = journalPath.resolveSibling(journalPath.getFileName() + ".part");
+        try {
+            Files.createDirectories(journalPath.toAbsolutePath().getParent());
+            try (Writer writer = Files.newBufferedWriter(tempPath)) {
+                gson.toJson(new HashMap<>(entries), writer);
+            }
+            DownloadManager.commitPartFile(tempPath, journalPath);
+        } catch (IOException e) {
+            dirty = true;
+            logger.error(e);
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(journalPath)) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(journalPath)) {
+            Map<String, Entry> stored = gson.fromJson(reader, new TypeToken<Map<String, Entry>>() {}.getType());
+            if (stored != null) {
+                stored.forEach((part, entry) -> {
+                    if (Files.exists(Path.of(part))) {
+                        entries.put(part, entry);
+                    }
+                });
+            }
+        } catch (IOException | JsonSyntaxException e) {
+            logger.warn("Download journal " + journalPath + " is unreadable, partial downloads will start over.");
+        }
+    }
+
+    private static String key(Path partPath) {
+        return partPath.toAbsolutePath().normalize().toString();
+    }
+
+}
@@ -2,204 +2,610 @@ package network;
 
 import logging.SimpleLogger;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.net.ConnectException;
 import java.net.URI;
-import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
-import java.nio.channels.FileChannel;
-import java.nio.channels.ReadableByteChannel;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.HashMap;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class DownloadManager {
 
     protected static boolean insecure = false;
+    private static volatile boolean deepVerify = false;
 
     private static final SimpleLogger logger = new SimpleLogger(true);
 
-    private static final Semaphore semaphore = new Semaphore(35, true);
-    private static final ExecutorService writeThreads = Executors.newCachedThreadPool();
-    private static final AtomicLong totalBytesDownloaded = new AtomicLong(0);
+    private static final int MAX_CONNECTIONS_PER_HOST = 64;
+    private static final int MAX_QUEUED_IN_FLIGHT = 256;
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long BACKOFF_BASE_MILLIS = 250;
+    private static final long BACKOFF_MAX_MILLIS = 8000;
+    private static final double HEDGE_QUANTILE = 0.95;
+    private static final long MIN_HEDGE_SAMPLES = 32;
+    private static final int HEDGE_BUDGET_PERCENT = 5;
+    private static final long PEER_COOLDOWN_MILLIS = 30_000;
+    private static final Path CACHE = Path.of(System.getProperty("hclilauncher.cache", "cache"));
+    private static final Path JOURNAL = CACHE.resolve("downloads.journal.json");
+    private static final Path VERIFICATION_INDEX = CACHE.resolve("verification.json");
+    private static final Path DEFAULT_OBJECT_STORE = Path.of(System.getProperty("user.home"), ".hclilauncher", "objects");
+
+    private static final ExecutorService writeThreads = Executors.newVirtualThreadPerTaskExecutor();
+    private static final DownloadMetrics metrics = new DownloadMetrics();
+    private static final HttpDownloadEngine engine = new HttpDownloadEngine(MAX_CONNECTIONS_PER_HOST, JOURNAL, metrics);
+    private static final VerificationIndex verificationIndex = new VerificationIndex(VERIFICATION_INDEX);
+    private static volatile ObjectStore objectStore = new ObjectStore(DEFAULT_OBJECT_STORE);
+    private static final Mirrors mirrors = new Mirrors();
+    private static final AtomicLong requestsStarted = new AtomicLong(0);
+    private static final AtomicLong hedgesStarted = new AtomicLong(0);
+    private static final Map<String, AtomicInteger> outstanding = new ConcurrentHashMap<>();
+    private static volatile List<URI> peers = List.of();
+    private static final Map<URI, Long> unreachablePeers = new ConcurrentHashMap<>();
     public static final AtomicLong filesLeft = new AtomicLong(0);
-    private static final AtomicLong totalStartTime = new AtomicLong(System.currentTimeMillis());
     public static final AtomicReference<String> lastDownloadedFile = new AtomicReference<>("none");
 
-    public static double getCurrentDownloadSpeed() {
+    public static HttpClient getHttpClient() {
+        return engine.getHttpClient();
+    }
 
-        long currentTime = System.currentTimeMillis();
-        long elapsedTime = currentTime - totalStartTime.get();
+    /**
+     * The directory launcher state such as the download journal and cached manifests is kept in, {@code cache}
+     * unless the {@code hclilauncher.cache} system property names another.
+     */
+    public static Path getCacheRoot() {
+        return CACHE;
+    }
 
-        if (elapsedTime <= 0) {
-            return 0.0;
-        }
+    public static ObjectStore getObjectStore() {
+        return objectStore;
+    }
 
-        long totalBytes = totalBytesDownloaded.get();
-        double speedBps = totalBytes / (elapsedTime / 1000.0);
-        return speedBps / (1024.0 * 1024.0);
+    public static void setObjectStore(ObjectStore objectStore) {
+        DownloadManager.objectStore = objectStore;
     }
 
+    /**
+     * Sets the mirrors tried, fastest first, for every URI under {@code canonicalBase}.
+     */
+    public static void setMirrors(String canonicalBase, List<String> mirrorBases) {
+        mirrors.set(canonicalBase, mirrorBases);
+    }
 
-    public static void downloadFile(URI uri, String SHA1, Path rootFolder, boolean createFoldersFromURI) {
+    /**
+     * Sets the LAN peers (see {@link PeerServer}) asked for an object by its SHA-1 before going upstream.
+     */
+    public static void setPeers(List<URI> peers) {
+        DownloadManager.peers = peers.stream()
+                .map(peer -> peer.toString().endsWith("/") ? peer : URI.create(peer + "/"))
+                .toList();
+    }
+
+    public static void setBandwidthLimit(long bytesPerSecond) {
+        engine.getBandwidthLimiter().setLimit(bytesPerSecond);
+    }
+
+    public static void setDeepVerify(boolean deepVerify) {
+        DownloadManager.deepVerify = deepVerify;
+    }
+
+    public static DownloadMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Current download speed in MiB/s, measured over the last few seconds rather than since startup.
+     */
+    public static double getCurrentDownloadSpeed() {
+        return metrics.getThroughput() / (1024.0 * 1024.0);
+    }
+
+    /**
+     * Writes the verification index and the download journal now rather than on their next interval.
+     */
+    static void flush() {
+        verificationIndex.flush();
+        engine.flushJournal();
+    }
+
+    public static void writeReport(String stage, boolean success, Path reportPath) {
+        DownloadMetrics.write(metrics.report(stage, success, engine.getHostLimits()), reportPath);
+    }
 
-        if (filesLeft.get() <= 0) {
-            filesLeft.incrementAndGet();
-        }
 
-        Path targetPath = createFoldersFromURI
+    public static CompletableFuture<Boolean> downloadFile(URI uri, String SHA1, Path rootFolder, boolean createFoldersFromURI) {
+        return downloadFileTo(uri, SHA1, resolveTarget(uri, rootFolder, createFoldersFromURI));
+    }
+
+    public static CompletableFuture<Boolean> downloadFileTo(URI uri, String SHA1, Path targetPath) {
+        filesLeft.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> transfer(uri, SHA1, targetPath, null), writeThreads);
+    }
+
+    private static Path resolveTarget(URI uri, Path rootFolder, boolean createFoldersFromURI) {
+        return createFoldersFromURI
                 ? rootFolder.resolve(uri.getPath().substring(1))
                 : rootFolder.resolve(Path.of(uri.getPath()).getFileName());
+    }
+
+    private static boolean transfer(URI uri, String SHA1, Path targetPath, DiskLayout layout) {
+        boolean placed = place(uri, SHA1, targetPath, layout);
+        metrics.onFileCompleted(placed);
+        return placed;
+    }
+
+    /**
+     * Reads the destination of a batch in one walk, or returns null to fall back to checking file by file.
+     */
+    private static DiskLayout plan(Path destFolder) {
+        try {
+            return DiskLayout.scan(destFolder);
+        } catch (IOException e) {
+            logger.warn("Could not scan " + destFolder + ", checking files one by one: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Whether the layout alone shows {@code targetPath} is in place, without hashing it: it exists and either
+     * needs no hash check or is recorded as verified with the same attributes.
+     */
+    private static boolean isPlaced(DiskLayout layout, Path targetPath, String SHA1) {
+        BasicFileAttributes attributes = layout.attributes(targetPath);
+        if (attributes == null) {
+            return false;
+        }
+        return insecure || SHA1.equals("UNPROVIDED") || !deepVerify && verificationIndex.isVerified(targetPath, SHA1, attributes);
+    }
+
+    private static boolean place(URI uri, String SHA1, Path targetPath, DiskLayout layout) {
+
         String fileName = targetPath.getFileName().toString();
         boolean checkHash = !insecure && !SHA1.equals("UNPROVIDED");
 
-        if (Files.exists(targetPath) && (checkHash || checkFileHash(targetPath, SHA1))) {
+        try {
+            boolean exists = layout != null ? layout.attributes(targetPath) != null : Files.exists(targetPath);
+            if (exists && (!checkHash || checkFileHash(targetPath, SHA1))) {
+                return true;
+            }
+
+            if (checkHash && SHA1.isBlank()) {
+                logger.error(new IllegalArgumentException("Empty hash."));
+                return false;
+            }
+
+            if (checkHash && objectStore != null && objectStore.materialize(SHA1, targetPath)) {
+                verificationIndex.record(targetPath, SHA1);
+                return true;
+            }
+
+            if (layout != null) {
+                layout.createDirectories(targetPath.getParent());
+            } else {
+                Files.createDirectories(targetPath.getParent());
+            }
+
+            boolean fromPeer = checkHash && fromPeers(SHA1, targetPath);
+            if (!fromPeer && fetch(uri, checkHash ? SHA1 : null, targetPath) == HttpDownloadEngine.Result.HASH_MISMATCH) {
+                logger.warn("The provided hash does not match the hash of the file " + fileName + ", you can disable hash checking by using the argument --insecure.");
+                return false;
+            }
+
+            if (checkHash) {
+                verificationIndex.record(targetPath, SHA1);
+                if (objectStore != null && objectStore.adopt(targetPath, SHA1)) {
+                    verificationIndex.record(objectStore.pathOf(SHA1), SHA1);
+                }
+            } else {
+                logger.warn("Ignoring SHA1 hash check for this file " + fileName);
+            }
+            return true;
+
+        } catch (IOException e) {
+            logger.error(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error(e);
+        } finally {
             filesLeft.decrementAndGet();
-            semaphore.release();
-            return;
+            lastDownloadedFile.set(fileName);
         }
+        return false;
+    }
 
-        try {
-            Files.createDirectories(targetPath.getParent());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    /**
+     * Asks every reachable peer for the object with {@code SHA1} and returns true once one of them served an
+     * intact copy. Peers write to their own part file, so a miss never touches a resumable upstream part. A
+     * peer that refuses connections is skipped for {@code PEER_COOLDOWN_MILLIS}.
+     */
+    private static boolean fromPeers(String SHA1, Path targetPath) throws InterruptedException {
+
+        Path partPath = targetPath.resolveSibling(targetPath.getFileName() + ".peer.part");
+        for (URI peer : peers) {
+            Long skipUntil = unreachablePeers.get(peer);
+            if (skipUntil != null && skipUntil > System.currentTimeMillis()) {
+                continue;
+            }
+
+            try {
+                URI object = peer.resolve(SHA1.toLowerCase(Locale.ROOT));
+                if (download(object, SHA1, targetPath, partPath, () -> {}) == HttpDownloadEngine.Result.DOWNLOADED) {
+                    return true;
+                }
+            } catch (ConnectException | HttpConnectTimeoutException e) {
+                long now = System.currentTimeMillis();
+                Long previous = unreachablePeers.put(peer, now + PEER_COOLDOWN_MILLIS);
+                if (previous == null || previous <= now) {
+                    logger.warn("Peer " + peer + " is unreachable, skipping it for " + PEER_COOLDOWN_MILLIS / 1000 + " seconds.");
+                }
+            } catch (IOException e) {
+                // not on this peer
+            }
         }
 
+        if (!peers.isEmpty()) {
+            try {
+                engine.discard(partPath);
+            } catch (IOException e) {
+                logger.error(e);
+            }
+        }
+        return false;
+    }
 
-        writeThreads.submit(() -> {
-            try (ReadableByteChannel readableByteChannel = Channels.newChannel(uri.toURL().openStream());
-                 FileOutputStream fileOutputStream = new FileOutputStream(targetPath.toFile());
-                 FileChannel fileChannel = fileOutputStream.getChannel()) {
+    /**
+     * Downloads {@code uri} from its mirrors, fastest first, retrying failed attempts on the next mirror
+     * after a jittered exponential backoff. A hash mismatch is only retried when another mirror exists.
+     */
+    private static HttpDownloadEngine.Result fetch(URI uri, String SHA1, Path targetPath) throws IOException, InterruptedException {
+
+        List<URI> candidates = mirrors.candidates(uri, DownloadManager::cost);
+        HttpDownloadEngine.Result result = HttpDownloadEngine.Result.HASH_MISMATCH;
+        IOException failure = null;
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            URI primary = candidates.get(attempt % candidates.size());
+            if (attempt > 0) {
+                metrics.onRetry(HttpDownloadEngine.hostOf(primary));
+                Thread.sleep(backoff(attempt));
+            }
 
-                ByteBuffer buffer = ByteBuffer.allocate(4096);
-                while (readableByteChannel.read(buffer) != -1) {
-                    buffer.flip();
-                    long bytesToWrite = buffer.remaining();
-                    fileChannel.write(buffer);
-                    buffer.clear();
-                    totalBytesDownloaded.addAndGet(bytesToWrite);
+            try {
+                URI hedge = candidates.size() > 1 ? candidates.get((attempt + 1) % candidates.size()) : null;
+                result = hedged(primary, hedge, SHA1, targetPath);
+                failure = null;
+                if (result == HttpDownloadEngine.Result.DOWNLOADED || candidates.size() == 1) {
+                    return result;
                 }
+                logger.warn("Hash mismatch for " + primary + ", trying another mirror.");
+            } catch (IOException e) {
+                failure = e;
+                logger.warn("Attempt " + (attempt + 1) + "/" + MAX_ATTEMPTS + " for " + primary + " failed: " + e.getMessage());
+            }
+        }
 
-                if (checkHash) {
-                    if (SHA1.isBlank()) {
-                        logger.error(new IllegalArgumentException("Empty hash."));
-                        Files.delete(targetPath);
-                    } else {
-                        if (!checkFileHash(targetPath, SHA1)) {
-                            logger.warn("The provided hash does not match the hash of the file " + fileName + ", you can disable hash checking by using the argument --insecure.");
-                            Files.delete(targetPath);
-                        }
+        if (failure != null) {
+            throw failure;
+        }
+        return result;
+    }
+
+    /**
+     * Expected wait for one more request to the host of {@code uri}: its smoothed latency times the requests
+     * already outstanding there. Unmeasured hosts count as instant so that each gets sampled early.
+     */
+    private static long cost(URI uri) {
+        String host = HttpDownloadEngine.hostOf(uri);
+        return Math.max(1, metrics.getLatencyEstimate(host)) * (1 + outstanding(host).get());
+    }
+
+    private static AtomicInteger outstanding(String host) {
+        return outstanding.computeIfAbsent(host, key -> new AtomicInteger());
+    }
+
+    private static HttpDownloadEngine.Result download(URI uri, String SHA1, Path targetPath, Path partPath, Runnable onResponse) throws IOException, InterruptedException {
+        AtomicInteger pending = outstanding(HttpDownloadEngine.hostOf(uri));
+        pending.incrementAndGet();
+        try {
+            return engine.download(uri, SHA1, targetPath, partPath, onResponse);
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * Full jitter: a random delay up to an exponentially growing cap, so clients that failed together do not
+     * retry together.
+     */
+    private static long backoff(int attempt) {
+        long cap = Math.min(BACKOFF_MAX_MILLIS, BACKOFF_BASE_MILLIS << Math.min(attempt, 16));
+        return ThreadLocalRandom.current().nextLong(cap / 2, cap + 1);
+    }
+
+    /**
+     * Starts {@code primary} and, when it has not responded within the {@code HEDGE_QUANTILE} time-to-first-byte
+     * seen so far, races a second request to {@code hedge} into its own part file. The first verified copy
+     * wins and the other request is cancelled, and its part file and journal entry are removed since nothing
+     * will resume them. Hedges are capped at {@code HEDGE_BUDGET_PERCENT} of requests.
+     */
+    private static HttpDownloadEngine.Result hedged(URI primary, URI hedge, String SHA1, Path targetPath) throws IOException, InterruptedException {
+
+        requestsStarted.incrementAndGet();
+        long delay = metrics.getTimeToFirstByteCount() >= MIN_HEDGE_SAMPLES ? metrics.getTimeToFirstBytePercentile(HEDGE_QUANTILE) : -1;
+        if (hedge == null || delay < 0) {
+            return download(primary, SHA1, targetPath, targetPath.resolveSibling(targetPath.getFileName() + ".part"), () -> {});
+        }
+
+        CountDownLatch responded = new CountDownLatch(1);
+        ExecutorCompletionService<HttpDownloadEngine.Result> race = new ExecutorCompletionService<>(writeThreads);
+        Contender first = new Contender(targetPath.resolveSibling(targetPath.getFileName() + ".part"));
+        first.future = race.submit(() -> {
+            try {
+                return download(primary, SHA1, targetPath, first.partPath, responded::countDown);
+            } finally {
+                responded.countDown();
+                first.exit();
+            }
+        });
+        Contender second = null;
+        Contender winner = null;
+
+        try {
+            if (!responded.await(delay, TimeUnit.MILLISECONDS) && hedgesStarted.get() * 100 < requestsStarted.get() * HEDGE_BUDGET_PERCENT) {
+                hedgesStarted.incrementAndGet();
+                metrics.onHedge(HttpDownloadEngine.hostOf(hedge));
+                Contender started = new Contender(targetPath.resolveSibling(targetPath.getFileName() + ".hedge.part"));
+                started.future = race.submit(() -> {
+                    try {
+                        return download(hedge, SHA1, targetPath, started.partPath, () -> {});
+                    } finally {
+                        started.exit();
+                    }
+                });
+                second = started;
+            }
+
+            int pending = second == null ? 1 : 2;
+            while (true) {
+                Future<HttpDownloadEngine.Result> done = race.take();
+                pending--;
+                try {
+                    HttpDownloadEngine.Result result = done.get();
+                    if (result == HttpDownloadEngine.Result.DOWNLOADED) {
+                        winner = done == first.future ? first : second;
+                    }
+                    if (result == HttpDownloadEngine.Result.DOWNLOADED || pending == 0) {
+                        return result;
+                    }
+                } catch (ExecutionException e) {
+                    if (pending == 0) {
+                        throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
                     }
-                } else {
-                    logger.warn("Ignoring SHA1 hash check for this file " + fileName);
                 }
+            }
+        } finally {
+            // the primary's part file is kept for a later attempt unless the hedge already delivered the file
+            if (winner != null && winner != first) {
+                first.lose();
+            } else {
+                first.future.cancel(true);
+            }
+            if (second != null && winner != second) {
+                second.lose();
+            }
+        }
+    }
+
+    /**
+     * One request of a hedged race. Whichever of the request and the race finishes last removes the part
+     * file of a request that lost, so a transfer that is still writing when it is cancelled cleans up too.
+     */
+    private static final class Contender {
+
+        final Path partPath;
+        final AtomicBoolean exited = new AtomicBoolean();
+        volatile boolean lost = false;
+        Future<HttpDownloadEngine.Result> future;
+
+        Contender(Path partPath) {
+            this.partPath = partPath;
+        }
+
+        void exit() {
+            exited.set(true);
+            if (lost) {
+                discard();
+            }
+        }
+
+        void lose() {
+            lost = true;
+            future.cancel(true);
+            if (exited.get()) {
+                discard();
+            }
+        }
 
+        private void discard() {
+            try {
+                engine.discard(partPath);
             } catch (IOException e) {
                 logger.error(e);
-            } finally {
-                semaphore.release();
-                filesLeft.decrementAndGet();
-                lastDownloadedFile.set(fileName);
             }
-        });
+        }
+    }
+
+    public static void commitPartFile(Path partPath, Path targetPath) throws IOException {
+        try {
+            Files.move(partPath, targetPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partPath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+        }
     }
 
     public static Map<URI, String> check(Map<URI, String> toCheck, Path rootFolder, boolean uriFolder) {
+        return verify(toCheck, rootFolder, uriFolder).badHash();
+    }
+
+    public static IntegrityVerifier.Report verify(Map<URI, String> toCheck, Path rootFolder, boolean uriFolder) {
 
         logger.info("Files integrity check...");
-        Map<URI, String> badHash = new HashMap<>();
-        rootFolder = Path.of(System.getProperty("user.dir")).resolve(rootFolder);
+        Path root = Path.of(System.getProperty("user.dir")).resolve(rootFolder);
 
-        for (URI key : toCheck.keySet()) {
+        IntegrityVerifier.Report report = IntegrityVerifier.verify(toCheck,
+                key -> uriFolder ? root.resolve(key.getPath().substring(1)) : root.resolve(Path.of(key.getPath()).getFileName()),
+                DownloadManager::checkFileHash);
 
-            Path targetPath = uriFolder ? rootFolder.resolve(key.getPath().substring(1)) : rootFolder.resolve(Path.of(key.getPath()).getFileName());
-            if (!checkFileHash(targetPath, toCheck.get(key))) {
-                try {
-                    Files.delete(targetPath);
-                } catch (IOException e) {
-                    logger.error(e);
-                }
-                badHash.put(key, toCheck.get(key));
+        for (URI key : report.badHash().keySet()) {
+            Path targetPath = uriFolder ? root.resolve(key.getPath().substring(1)) : root.resolve(Path.of(key.getPath()).getFileName());
+            try {
+                Files.deleteIfExists(targetPath);
+            } catch (IOException e) {
+                logger.error(e);
             }
-
         }
 
-        if (badHash.isEmpty()) {
+        verificationIndex.flush();
+
+        if (report.badHash().isEmpty()) {
             logger.info("All files successfully passed integrity check.");
         } else logger.warn("Some files did not pass validation, trying to re-download these files.");
 
-        return badHash;
+        return report;
     }
 
 
-    public static void downloadFiles(Map<URI, String> urls, Path destFolder, boolean createFoldersFromURI) {
+    /**
+     * Downloads every missing file of {@code urls}. The destination is scanned once up front: files already
+     * in place are skipped without a thread, and the directories the rest need are created before any
+     * download starts.
+     */
+    public static boolean downloadFiles(Map<URI, String> urls, Path destFolder, boolean createFoldersFromURI) {
+
+        DiskLayout layout = plan(destFolder);
+        List<Map.Entry<URI, String>> missing = new ArrayList<>(urls.size());
+        List<Path> targets = new ArrayList<>(urls.size());
+        Set<Path> parents = new TreeSet<>();
+        for (Map.Entry<URI, String> entry : urls.entrySet()) {
+            Path targetPath = resolveTarget(entry.getKey(), destFolder, createFoldersFromURI);
+            if (layout != null && isPlaced(layout, targetPath, entry.getValue())) {
+                metrics.onFileCompleted(true);
+                continue;
+            }
+            missing.add(entry);
+            targets.add(targetPath);
+            parents.add(targetPath.getParent());
+        }
 
-        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            filesLeft.addAndGet(urls.size());
-
-            /*
-            ScheduledExecutorService scheduledThread = Executors.newSingleThreadScheduledExecutor()
-            scheduledThread.scheduleAtFixedRate(() -> {
-                System.out.print("\r" + getCurrentDownloadSpeed() + "MB/s, Files left: " + filesLeft.get() + ", Latest downloaded file: " + lastDownloadedFile.get());
-                if (filesLeft.get() == 0) {
-                    executor.shutdownNow();
-                    writeThreads.shutdownNow();
-                    totalBytesDownloaded.set(0);
-                    totalStartTime.set(0);
-                    scheduledThread.shutdownNow();
+        if (layout != null) {
+            try {
+                for (Path parent : parents) {
+                    layout.createDirectories(parent);
                 }
-            }, 500, 500, TimeUnit.MILLISECONDS);
+            } catch (IOException e) {
+                logger.error(e);
+                return false;
+            }
+        }
 
+        List<Future<Boolean>> results = new ArrayList<>(missing.size());
 
-             */
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            filesLeft.addAndGet(missing.size());
 
-            for (URI url : urls.keySet()) {
-                semaphore.acquire();
-                executor.submit(() -> downloadFile(url, urls.get(url), destFolder, createFoldersFromURI));
+            for (int i = 0; i < missing.size(); i++) {
+                Map.Entry<URI, String> entry = missing.get(i);
+                Path targetPath = targets.get(i);
+                results.add(executor.submit(() -> transfer(entry.getKey(), entry.getValue(), targetPath, layout)));
             }
 
-            /*
-            if (!scheduledThread.awaitTermination(60, TimeUnit.SECONDS)) {
-                logger.error(new TimeoutException("The downloadFiles task did not complete within the time frame (60 seconds). Try running the download again if it's not a bug!"));
-            }
+        }
 
-             */
+        verificationIndex.flush();
 
+        return results.stream().allMatch(result -> result.state() == Future.State.SUCCESS && result.resultNow());
 
+    }
+
+    /**
+     * Consumes entries from {@code queue} while {@code producer} is still filling it and downloads them with
+     * at most {@code MAX_QUEUED_IN_FLIGHT} transfers outstanding, so memory does not grow with the input size.
+     */
+    public static boolean downloadQueue(BlockingQueue<Map.Entry<URI, String>> queue, Future<?> producer, Path destFolder, boolean createFoldersFromURI) {
+
+        DiskLayout layout = plan(destFolder);
+        Semaphore inFlight = new Semaphore(MAX_QUEUED_IN_FLIGHT);
+        AtomicBoolean allDownloaded = new AtomicBoolean(true);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (true) {
+                Map.Entry<URI, String> entry = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (entry == null) {
+                    if (producer.isDone() && queue.isEmpty()) {
+                        break;
+                    }
+                    continue;
+                }
+
+                Path targetPath = resolveTarget(entry.getKey(), destFolder, createFoldersFromURI);
+                if (layout != null && isPlaced(layout, targetPath, entry.getValue())) {
+                    metrics.onFileCompleted(true);
+                    continue;
+                }
+
+                inFlight.acquire();
+                filesLeft.incrementAndGet();
+                executor.submit(() -> {
+                    try {
+                        if (!transfer(entry.getKey(), entry.getValue(), targetPath, layout)) {
+                            allDownloaded.set(false);
+                        }
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             logger.error(e);
+            return false;
         }
 
+        verificationIndex.flush();
+
+        return allDownloaded.get() && producer.state() == Future.State.SUCCESS;
     }
 
     public static boolean checkFileHash(Path filePath, String expectedHash) {
-        try {
-            MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
-
-            try (FileChannel fileChannel = (FileChannel) Files.newByteChannel(filePath)) {
-                ByteBuffer buffer = ByteBuffer.allocate(2048);
-                while (fileChannel.read(buffer) != -1) {
-                    buffer.flip();
-                    messageDigest.update(buffer);
-                    buffer.clear();
-                }
-            }
 
-            byte[] fileHashBytes = messageDigest.digest();
+        if (!deepVerify && verificationIndex.isVerified(filePath, expectedHash)) {
+            return true;
+        }
 
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : fileHashBytes) {
-                hexString.append(String.format("%02x", b));
+        try {
+            if (IntegrityVerifier.matches(filePath, expectedHash)) {
+                verificationIndex.record(filePath, expectedHash);
+                return true;
             }
-
-            return hexString.toString().equalsIgnoreCase(expectedHash);
-        } catch (NoSuchAlgorithmException | IOException e) {
+            verificationIndex.forget(filePath);
+        } catch (NoSuchFileException e) {
+            verificationIndex.forget(filePath);
+        } catch (IOException e) {
             logger.error(e);
         }
 
@@ -0,0 +1,276 @@
+package network;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import logging.SimpleLogger;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for everything the download engine does: throughput over a sliding window, histograms of
+ * time-to-first-byte and total transfer latency, and per-host bytes, retries, resumes and failures. Transfer latency
+ * covers the whole engine call, including time spent waiting for a connection slot to the host.
+ */
+public final class DownloadMetrics {
+
+    public record HistogramSnapshot(long count, double meanMillis, long p50Millis, long p90Millis, long p99Millis, long maxMillis, long[] buckets) {}
+
+    public record HostSnapshot(long requests, long bytes, long retries, long resumes, long hedges, long failures, long hashFailures, double latencyEstimateMillis, int concurrencyLimit) {}
+
+    public record Report(String stage, boolean success, String started, long durationMillis, long files, long failedFiles, long bytes,
+                         double averageBytesPerSecond, double peakBytesPerSecond, HistogramSnapshot timeToFirstByte,
+                         HistogramSnapshot latency, Map<String, HostSnapshot> hosts) {}
+
+    private static final SimpleLogger logger = new SimpleLogger(true);
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    private static final long SLOT_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final int WINDOW_SLOTS = 20;
+    private static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    /**
+     * Power-of-two latency buckets: bucket {@code i} counts samples below {@code 2^i} ms, the last one
+     * everything from about 65 seconds up.
+     */
+    static final class LatencyHistogram {
+
+        private static final int BUCKETS = 18;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(Math.max(0, nanos));
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+            buckets.incrementAndGet(bucket);
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+        }
+
+        HistogramSnapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            double mean = total == 0 ? 0 : totalNanos.sum() / (double) total / TimeUnit.MILLISECONDS.toNanos(1);
+            return new HistogramSnapshot(total, mean, percentile(counts, total, 0.5), percentile(counts, total, 0.9),
+                    percentile(counts, total, 0.99), TimeUnit.NANOSECONDS.toMillis(maxNanos.get()), counts);
+        }
+
+        /**
+         * Upper bound of the bucket holding the {@code quantile}, so the estimate is never optimistic.
+         */
+        long percentile(double quantile) {
+            HistogramSnapshot snapshot = snapshot();
+            return percentile(snapshot.buckets(), snapshot.count(), quantile);
+        }
+
+        private static long percentile(long[] counts, long total, double quantile) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return 1L << i;
+                }
+            }
+            return 1L << (counts.length - 1);
+        }
+    }
+
+    private static final class HostStats {
+        final LongAdder requests = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder resumes = new LongAdder();
+        final LongAdder hedges = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder hashFailures = new LongAdder();
+        final AtomicLong latencyEstimate = new AtomicLong();
+
+        /**
+         * Exponentially weighted moving average with a weight of 1/8, like TCP's smoothed round-trip time.
+         */
+        void sampleLatency(long nanos) {
+            latencyEstimate.accumulateAndGet(Math.max(1, nanos), (estimate, sample) -> estimate == 0 ? sample : estimate + (sample - estimate) / 8);
+        }
+    }
+
+    private final AtomicLongArray slotBytes = new AtomicLongArray(WINDOW_SLOTS);
+    private final AtomicLongArray slotIndex = new AtomicLongArray(WINDOW_SLOTS);
+    private final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final Map<String, HostStats> hosts = new ConcurrentHashMap<>();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder failedFiles = new LongAdder();
+    private final AtomicLong peakBytesPerSecond = new AtomicLong();
+    private volatile long startNanos = System.nanoTime();
+    private volatile Instant started = Instant.now();
+
+    public void reset() {
+        for (int i = 0; i < WINDOW_SLOTS; i++) {
+            slotBytes.set(i, 0);
+            slotIndex.set(i, 0);
+        }
+        timeToFirstByte.reset();
+        latency.reset();
+        hosts.clear();
+        bytes.reset();
+        files.reset();
+        failedFiles.reset();
+        peakBytesPerSecond.set(0);
+        startNanos = System.nanoTime();
+        started = Instant.now();
+    }
+
+    void onBytes(String host, long count) {
+        long slot = System.nanoTime() / SLOT_NANOS;
+        int index = Math.floorMod(slot, WINDOW_SLOTS);
+        long previous = slotIndex.get(index);
+        if (previous != slot && slotIndex.compareAndSet(index, previous, slot)) {
+            peakBytesPerSecond.accumulateAndGet((long) getThroughput(), Math::max);
+            slotBytes.set(index, 0);
+        }
+        slotBytes.addAndGet(index, count);
+        bytes.add(count);
+        host(host).bytes.add(count);
+    }
+
+    void onRetry(String host) {
+        host(host).retries.increment();
+    }
+
+    void onResume(String host) {
+        host(host).resumes.increment();
+    }
+
+    void onHedge(String host) {
+        host(host).hedges.increment();
+    }
+
+    void onTransfer(String host, long timeToFirstByteNanos, long latencyNanos, HttpDownloadEngine.Result result) {
+        HostStats stats = host(host);
+        stats.requests.increment();
+        if (timeToFirstByteNanos > 0) {
+            timeToFirstByte.record(timeToFirstByteNanos);
+            stats.sampleLatency(timeToFirstByteNanos);
+        }
+        if (result == HttpDownloadEngine.Result.DOWNLOADED) {
+            latency.record(latencyNanos);
+        } else if (result == HttpDownloadEngine.Result.HASH_MISMATCH) {
+            stats.hashFailures.increment();
+            stats.sampleLatency(FAILURE_PENALTY_NANOS);
+        } else {
+            stats.failures.increment();
+            stats.sampleLatency(FAILURE_PENALTY_NANOS);
+        }
+    }
+
+    void onFileCompleted(boolean success) {
+        files.increment();
+        if (!success) {
+            failedFiles.increment();
+        }
+    }
+
+    /**
+     * Bytes per second received over the last {@code WINDOW_SLOTS} slots, not counting the slot in progress.
+     */
+    public double getThroughput() {
+        long current = System.nanoTime() / SLOT_NANOS;
+        long sum = 0;
+        for (int i = 0; i < WINDOW_SLOTS; i++) {
+            long slot = slotIndex.get(i);
+            if (slot < current && current - slot < WINDOW_SLOTS) {
+                sum += slotBytes.get(i);
+            }
+        }
+        long windowNanos = Math.min(System.nanoTime() - startNanos, (WINDOW_SLOTS - 1) * SLOT_NANOS);
+        if (windowNanos < SLOT_NANOS) {
+            return 0.0;
+        }
+        return sum / (windowNanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public long getTimeToFirstBytePercentile(double quantile) {
+        return timeToFirstByte.percentile(quantile);
+    }
+
+    public long getTimeToFirstByteCount() {
+        return timeToFirstByte.count.sum();
+    }
+
+    /**
+     * Smoothed time-to-first-byte of {@code host} in nanoseconds, with failures counted as slow responses,
+     * or 0 when nothing was fetched from it yet.
+     */
+    public long getLatencyEstimate(String host) {
+        HostStats stats = hosts.get(host);
+        return stats == null ? 0 : stats.latencyEstimate.get();
+    }
+
+    public Report report(String stage, boolean success, Map<String, AdaptiveLimiter> hostLimits) {
+        Map<String, HostSnapshot> hostSnapshots = new TreeMap<>();
+        hosts.forEach((host, stats) -> {
+            AdaptiveLimiter limiter = hostLimits.get(host);
+            hostSnapshots.put(host, new HostSnapshot(stats.requests.sum(), stats.bytes.sum(), stats.retries.sum(), stats.resumes.sum(), stats.hedges.sum(),
+                    stats.failures.sum(), stats.hashFailures.sum(), stats.latencyEstimate.get() / (double) TimeUnit.MILLISECONDS.toNanos(1),
+                    limiter == null ? 0 : limiter.getLimit()));
+        });
+
+        long elapsed = System.nanoTime() - startNanos;
+        long total = bytes.sum();
+        double average = elapsed <= 0 ? 0 : total / (elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+        return new Report(stage, success, started.toString(), TimeUnit.NANOSECONDS.toMillis(elapsed), files.sum(), failedFiles.sum(), total,
+                average, Math.max(average, peakBytesPerSecond.get()), timeToFirstByte.snapshot(), latency.snapshot(), hostSnapshots);
+    }
+
+    public static void write(Report report, Path reportPath) {
+        try {
+            Path parent = reportPath.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+
+            Path tempPath = reportPath.resolveSibling(reportPath.getFileName() + ".part");
+            try (Writer writer = Files.newBufferedWriter(tempPath)) {
+                gson.toJson(report, writer);
+            }
+            DownloadManager.commitPartFile(tempPath, reportPath);
+        } catch (IOException e) {
+            logger.error(e);
+        }
+    }
+
+    private HostStats host(String host) {
+        return hosts.computeIfAbsent(String.valueOf(host), key -> new HostStats());
+    }
+
+}
@@ -0,0 +1,315 @@
+package network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+public class HttpDownloadEngine {
+
+    public enum Result { DOWNLOADED, HASH_MISMATCH }
+
+    private static final long SEGMENTED_THRESHOLD = 16L * 1024 * 1024;
+    private static final int SEGMENTS = 6;
+    static final long CHECKPOINT_BYTES = 1024 * 1024;
+
+    private static final int INITIAL_HOST_LIMIT = 8;
+    private static final int MIN_HOST_LIMIT = 1;
+
+    private final HttpClient httpClient;
+    private final int maxConnectionsPerHost;
+    private final DownloadMetrics metrics;
+    private final DownloadJournal journal;
+    private final BandwidthLimiter bandwidthLimiter = new BandwidthLimiter(0);
+    private final Map<String, AdaptiveLimiter> hostLimits = new ConcurrentHashMap<>();
+
+    public HttpDownloadEngine(int maxConnectionsPerHost, Path journalPath, DownloadMetrics metrics) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.metrics = metrics;
+        this.journal = new DownloadJournal(journalPath);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(15))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    public BandwidthLimiter getBandwidthLimiter() {
+        return bandwidthLimiter;
+    }
+
+    public Map<String, AdaptiveLimiter> getHostLimits() {
+        return Collections.unmodifiableMap(hostLimits);
+    }
+
+    private AdaptiveLimiter hostLimit(URI uri) {
+        return hostLimits.computeIfAbsent(hostOf(uri),
+                host -> new AdaptiveLimiter(Math.min(INITIAL_HOST_LIMIT, maxConnectionsPerHost), MIN_HOST_LIMIT, maxConnectionsPerHost));
+    }
+
+    static String hostOf(URI uri) {
+        return String.valueOf(uri.getAuthority());
+    }
+
+    static boolean isOverloaded(int statusCode) {
+        return statusCode == 429 || statusCode >= 500;
+    }
+
+    /**
+     * Streams {@code uri} into {@code targetPath}.part while hashing it and renames the part file over
+     * {@code targetPath} once it is complete. A {@code null} expected hash skips verification. Large files
+     * served with {@code Accept-Ranges: bytes} are fetched as concurrent segments instead, and a part file
+     * left behind by an interrupted run is continued from its journaled offset, or its missing segments,
+     * with Range requests.
+     */
+    public Result download(URI uri, String expectedSHA1, Path targetPath) throws IOException, InterruptedException {
+        return download(uri, expectedSHA1, targetPath, targetPath.resolveSibling(targetPath.getFileName() + ".part"), () -> {});
+    }
+
+    /**
+     * Same as {@link #download(URI, String, Path)} with an explicit part file, so that two transfers of the
+     * same target can race, and a callback run once the response headers have arrived.
+     */
+    public Result download(URI uri, String expectedSHA1, Path targetPath, Path partPath, Runnable onResponse) throws IOException, InterruptedException {
+
+        DownloadEvent event = new DownloadEvent();
+        event.begin();
+        event.uri = uri.toString();
+        event.host = hostOf(uri);
+        long start = System.nanoTime();
+        Result result = null;
+        try {
+            result = fetch(uri, expectedSHA1, targetPath, partPath, onResponse, event);
+            return result;
+        } finally {
+            event.end();
+            event.result = result == null ? "FAILED" : result.name();
+            metrics.onTransfer(event.host, event.timeToFirstByte, System.nanoTime() - start, result);
+            if (event.shouldCommit()) {
+                event.commit();
+            }
+        }
+    }
+
+    private Result fetch(URI uri, String expectedSHA1, Path targetPath, Path partPath, Runnable onResponse, DownloadEvent event) throws IOException, InterruptedException {
+
+        String actualSHA1;
+        try {
+            actualSHA1 = request(uri, expectedSHA1, partPath, onResponse, event);
+        } catch (IOException | InterruptedException e) {
+            if (!journal.contains(partPath)) {
+                Files.deleteIfExists(partPath);
+            }
+            journal.flush();
+            throw e;
+        }
+
+        journal.remove(partPath);
+
+        if (expectedSHA1 != null && !actualSHA1.equalsIgnoreCase(expectedSHA1)) {
+            Files.deleteIfExists(partPath);
+            return Result.HASH_MISMATCH;
+        }
+
+        DownloadManager.commitPartFile(partPath, targetPath);
+        return Result.DOWNLOADED;
+    }
+
+    /**
+     * Sends the request and writes the body to {@code partPath}, continuing from the journaled offset when
+     * there is one. A large 200 response from a server that accepts ranges is handed to
+     * {@link SegmentedDownload} with its body still unread, which becomes the first segment. Returns the
+     * SHA-1 of the part file.
+     */
+    private String request(URI uri, String expectedSHA1, Path partPath, Runnable onResponse, DownloadEvent event) throws IOException, InterruptedException {
+
+        AdaptiveLimiter hostLimit = hostLimit(uri);
+        DownloadJournal.Entry segmented = journal.segmented(partPath, uri, expectedSHA1);
+        if (segmented != null) {
+            return resumeSegments(uri, expectedSHA1, partPath, segmented, hostLimit, onResponse, event);
+        }
+
+        long offset = journal.resumeOffset(partPath, uri, expectedSHA1);
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).GET();
+        if (offset > 0) {
+            request.header("Range", "bytes=" + offset + "-");
+            event.resumed = true;
+            metrics.onResume(event.host);
+        }
+
+        hostLimit.acquire();
+        boolean released = false;
+        try {
+            long start = System.nanoTime();
+            HttpResponse<InputStream> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+            long latency = System.nanoTime() - start;
+            event.timeToFirstByte = latency;
+            onResponse.run();
+
+            String actualSHA1;
+            try (InputStream body = response.body()) {
+                if (offset > 0 && response.statusCode() == 206 && isRangeFrom(response, offset)) {
+                    actualSHA1 = stream(body, uri, event.host, expectedSHA1, partPath, offset);
+                    event.bytes = Files.size(partPath) - offset;
+                } else if (response.statusCode() == 200) {
+                    long contentLength = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+                    boolean acceptsRanges = response.headers().firstValue("Accept-Ranges").filter("bytes"::equalsIgnoreCase).isPresent();
+
+                    if (acceptsRanges && contentLength >= SEGMENTED_THRESHOLD) {
+                        journal.remove(partPath);
+                        event.segmented = true;
+                        event.bytes = contentLength;
+                        released = true;
+                        return segmentedDownload(uri, expectedSHA1, partPath, contentLength, hostLimit, event)
+                                .fetchInto(partPath, SEGMENTS, body, latency);
+                    }
+                    actualSHA1 = stream(body, uri, event.host, expectedSHA1, partPath, 0);
+                    event.bytes = Files.size(partPath);
+                } else {
+                    journal.remove(partPath);
+                    if (isOverloaded(response.statusCode())) {
+                        hostLimit.onFailure();
+                    } else {
+                        hostLimit.release();
+                    }
+                    released = true;
+                    throw new IOException("Server returned HTTP " + response.statusCode() + " for " + uri);
+                }
+            }
+
+            hostLimit.onSuccess(latency, event.bytes);
+            released = true;
+            return actualSHA1;
+        } catch (IOException e) {
+            if (!released) {
+                hostLimit.onFailure();
+                released = true;
+            }
+            throw e;
+        } finally {
+            if (!released) {
+                hostLimit.release();
+            }
+        }
+    }
+
+    /**
+     * Requests only the ranges of a segmented part file that the journal does not record as written. A server
+     * that no longer honours ranges drops the journal entry, so the next attempt starts over.
+     */
+    private String resumeSegments(URI uri, String expectedSHA1, Path partPath, DownloadJournal.Entry entry, AdaptiveLimiter hostLimit,
+                                  Runnable onResponse, DownloadEvent event) throws IOException, InterruptedException {
+
+        event.resumed = true;
+        event.segmented = true;
+        event.bytes = entry.size() - SegmentedDownload.merge(entry.ranges()).stream().mapToLong(range -> range.end() - range.first()).sum();
+        metrics.onResume(event.host);
+
+        SegmentedDownload download = segmentedDownload(uri, expectedSHA1, partPath, entry.size(), hostLimit, event);
+        try {
+            return download.resume(partPath, SEGMENTS, entry.ranges(), onResponse);
+        } catch (IOException e) {
+            if (download.rangesRejected()) {
+                journal.remove(partPath);
+            }
+            throw e;
+        }
+    }
+
+    private SegmentedDownload segmentedDownload(URI uri, String expectedSHA1, Path partPath, long size, AdaptiveLimiter hostLimit, DownloadEvent event) {
+        return new SegmentedDownload(httpClient, uri, size, hostLimit, bandwidthLimiter, bytes -> metrics.onBytes(event.host, bytes),
+                ranges -> journal.checkpoint(partPath, uri, expectedSHA1, size, ranges));
+    }
+
+    void flushJournal() {
+        journal.flush();
+    }
+
+    /**
+     * Removes the part file of a transfer whose result is no longer wanted, and its journal entry.
+     */
+    void discard(Path partPath) throws IOException {
+        journal.remove(partPath);
+        journal.flush();
+        Files.deleteIfExists(partPath);
+    }
+
+    private static boolean isRangeFrom(HttpResponse<?> response, long offset) {
+        return response.headers().firstValue("Content-Range")
+                .map(range -> range.startsWith("bytes " + offset + "-"))
+                .orElse(false);
+    }
+
+    private String stream(InputStream body, URI uri, String host, String expectedSHA1, Path partPath, long offset) throws IOException, InterruptedException {
+        MessageDigest messageDigest = newSHA1();
+        try (FileChannel fileChannel = FileChannel.open(partPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            fileChannel.truncate(offset);
+            byte[] buffer = new byte[16384];
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+
+            long position = 0;
+            while (position < offset) {
+                byteBuffer.clear().limit((int) Math.min(buffer.length, offset - position));
+                int read = fileChannel.read(byteBuffer, position);
+                if (read < 0) {
+                    throw new IOException("Part file " + partPath + " is shorter than its journaled offset " + offset);
+                }
+                messageDigest.update(buffer, 0, read);
+                position += read;
+            }
+            fileChannel.position(offset);
+
+            long sinceCheckpoint = 0;
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                bandwidthLimiter.acquire(read);
+                messageDigest.update(buffer, 0, read);
+                byteBuffer.clear().limit(read);
+                while (byteBuffer.hasRemaining()) {
+                    fileChannel.write(byteBuffer);
+                }
+                position += read;
+                metrics.onBytes(host, read);
+
+                sinceCheckpoint += read;
+                if (sinceCheckpoint >= CHECKPOINT_BYTES) {
+                    fileChannel.force(false);
+                    journal.checkpoint(partPath, uri, expectedSHA1, position);
+                    sinceCheckpoint = 0;
+                }
+            }
+        }
+        return HexFormat.of().formatHex(messageDigest.digest());
+    }
+
+    static MessageDigest newSHA1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+package network;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+public final class IntegrityVerifier {
+
+    public record Report(Map<URI, String> badHash, Map<URI, Duration> timings) {
+
+        public List<Map.Entry<URI, Duration>> slowest(int limit) {
+            return timings.entrySet().stream()
+                    .sorted(Map.Entry.<URI, Duration>comparingByValue(Comparator.reverseOrder()))
+                    .limit(limit)
+                    .toList();
+        }
+
+    }
+
+    private static final long MAP_THRESHOLD = 1024 * 1024;
+    private static final long MAX_MAPPING = 256L * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private static final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(HttpDownloadEngine::newSHA1);
+    private static final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    private IntegrityVerifier() {}
+
+    /**
+     * Runs {@code check} for every entry on a work-stealing pool sized to the machine and collects the
+     * entries that failed together with the time spent on each file.
+     */
+    public static Report verify(Map<URI, String> toCheck, Function<URI, Path> resolver, BiPredicate<Path, String> check) {
+
+        Map<URI, String> badHash = new ConcurrentHashMap<>();
+        Map<URI, Duration> timings = new ConcurrentHashMap<>();
+
+        pool.submit(() -> toCheck.entrySet().parallelStream().forEach(entry -> {
+            long start = System.nanoTime();
+            if (!check.test(resolver.apply(entry.getKey()), entry.getValue())) {
+                badHash.put(entry.getKey(), entry.getValue());
+            }
+            timings.put(entry.getKey(), Duration.ofNanos(System.nanoTime() - start));
+        })).join();
+
+        return new Report(badHash, timings);
+    }
+
+    public static boolean matches(Path filePath, String expectedHash) throws IOException {
+        byte[] expected;
+        try {
+            expected = HexFormat.of().parseHex(expectedHash);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return MessageDigest.isEqual(digest(filePath), expected);
+    }
+
+    /**
+     * SHA-1 of the file. Files of at least 1 MiB are memory-mapped, smaller ones are read through a
+     * per-thread direct buffer; pool threads reuse their digest and buffer across files.
+     */
+    public static byte[] digest(Path filePath) throws IOException {
+
+        boolean virtual = Thread.currentThread().isVirtual();
+        MessageDigest messageDigest = virtual ? HttpDownloadEngine.newSHA1() : digests.get();
+        messageDigest.reset();
+
+        try (FileChannel fileChannel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long size = fileChannel.size();
+
+            if (size >= MAP_THRESHOLD) {
+                for (long position = 0; position < size; position += MAX_MAPPING) {
+                    messageDigest.update(fileChannel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_MAPPING, size - position)));
+                }
+            } else {
+                ByteBuffer buffer = virtual ? ByteBuffer.allocate(BUFFER_SIZE) : buffers.get();
+                buffer.clear();
+                while (fileChannel.read(buffer) != -1) {
+                    buffer.flip();
+                    messageDigest.update(buffer);
+                    buffer.clear();
+                }
+            }
+        }
+
+        return messageDigest.digest();
+    }
+
+}
@@ -0,0 +1,69 @@
+package network;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Alternative base URLs for each class of artifact, keyed by the canonical base the version metadata
+ * points at (e.g. {@code https://resources.download.minecraft.net/}).
+ */
+public final class Mirrors {
+
+    private final Map<String, List<String>> mirrors = new ConcurrentHashMap<>();
+
+    /**
+     * Registers {@code bases} in order of preference for every URI under {@code canonicalBase}. The canonical
+     * base is kept as the last resort when it is not part of the list.
+     */
+    public void set(String canonicalBase, List<String> bases) {
+        List<String> ordered = new ArrayList<>();
+        for (String base : bases) {
+            String normalized = withSlash(base);
+            if (!ordered.contains(normalized)) {
+                ordered.add(normalized);
+            }
+        }
+        if (!ordered.contains(withSlash(canonicalBase))) {
+            ordered.add(withSlash(canonicalBase));
+        }
+        mirrors.put(withSlash(canonicalBase), List.copyOf(ordered));
+    }
+
+    public List<String> get(String canonicalBase) {
+        return mirrors.getOrDefault(withSlash(canonicalBase), List.of());
+    }
+
+    /**
+     * Returns {@code uri} rewritten onto every mirror of its artifact class, cheapest first by {@code cost}.
+     * Mirrors of equal cost keep their configured order.
+     */
+    public List<URI> candidates(URI uri, ToLongFunction<URI> cost) {
+
+        String value = uri.toString();
+        for (Map.Entry<String, List<String>> entry : mirrors.entrySet()) {
+            if (!value.startsWith(entry.getKey())) {
+                continue;
+            }
+
+            String path = value.substring(entry.getKey().length());
+            List<URI> candidates = new ArrayList<>(entry.getValue().size());
+            for (String base : entry.getValue()) {
+                candidates.add(URI.create(base + path));
+            }
+            candidates.sort(Comparator.comparingLong(cost));
+            return candidates;
+        }
+
+        return List.of(uri);
+    }
+
+    private static String withSlash(String base) {
+        return base.endsWith("/") ? base : base + "/";
+    }
+
+}
@@ -0,0 +1,125 @@
+package network;
+
+import logging.SimpleLogger;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public final class ObjectStore {
+
+    private static final SimpleLogger logger = new SimpleLogger(true);
+
+    private final Path root;
+    private final AtomicBoolean linkFailureLogged = new AtomicBoolean();
+
+    public ObjectStore(Path root) {
+        this.root = root;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public Path pathOf(String sha1) {
+        String hash = sha1.toLowerCase(Locale.ROOT);
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    public boolean contains(String sha1) {
+        return Files.isRegularFile(pathOf(sha1));
+    }
+
+    /**
+     * Places the stored object for {@code sha1} at {@code targetPath} as a hard link, or as a copy when the
+     * store lives on another filesystem. Returns false when the store does not hold an intact copy.
+     */
+    public boolean materialize(String sha1, Path targetPath) {
+
+        Path stored = pathOf(sha1);
+        if (!Files.isRegularFile(stored)) {
+            return false;
+        }
+        if (!DownloadManager.checkFileHash(stored, sha1)) {
+            logger.warn("Dropping corrupted object " + stored + " from the shared store.");
+            try {
+                Files.deleteIfExists(stored);
+            } catch (IOException e) {
+                logger.error(e);
+            }
+            return false;
+        }
+
+        Path partPath = targetPath.resolveSibling(targetPath.getFileName() + ".part");
+        try {
+            Files.createDirectories(targetPath.getParent());
+            Files.deleteIfExists(partPath);
+            linkOrCopy(stored, partPath);
+            DownloadManager.commitPartFile(partPath, targetPath);
+            return true;
+        } catch (IOException e) {
+            logger.error(e);
+            return false;
+        }
+    }
+
+    /**
+     * Adds a verified file to the store as a hard link, so later installs, in this or any other game
+     * directory, can link it instead of downloading it again. A file that cannot be linked, for example
+     * because the store lives on another filesystem, is not adopted rather than stored a second time.
+     * Returns whether the store holds the object afterwards.
+     */
+    public boolean adopt(Path filePath, String sha1) {
+
+        Path stored = pathOf(sha1);
+        if (Files.exists(stored)) {
+            return true;
+        }
+
+        Path partPath = stored.resolveSibling(stored.getFileName() + "." + Thread.currentThread().threadId() + ".part");
+        try {
+            Files.createDirectories(stored.getParent());
+            Files.deleteIfExists(partPath);
+            Files.createLink(partPath, filePath);
+        } catch (UnsupportedOperationException | IOException e) {
+            if (linkFailureLogged.compareAndSet(false, true)) {
+                logger.warn("Cannot hard link " + filePath + " into the shared store " + root
+                        + ", downloaded files will not be added to it: " + e.getMessage());
+            }
+            return false;
+        }
+
+        try {
+            Files.move(partPath, stored, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            deleteQuietly(partPath);
+            return true;
+        } catch (IOException e) {
+            deleteQuietly(partPath);
+            logger.error(e);
+            return false;
+        }
+    }
+
+    private static void linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.error(e);
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+package network;
+
+import logging.SimpleLogger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves an {@link ObjectStore} to other launchers on the LAN as {@code GET /<sha1>} over plain HTTP/1.1.
+ * File bodies go out with {@link FileChannel#transferTo}, so they are copied by the kernel without passing
+ * through the Java heap.
+ */
+public final class PeerServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 24780;
+
+    private static final SimpleLogger logger = new SimpleLogger(true);
+    private static final int MAX_HEADER_BYTES = 8192;
+
+    private final ObjectStore objectStore;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+
+    public PeerServer(ObjectStore objectStore, int port) throws IOException {
+        this.objectStore = objectStore;
+        this.serverChannel = ServerSocketChannel.open().bind(new InetSocketAddress(port));
+    }
+
+    public int getPort() {
+        return ((InetSocketAddress) serverChannel.socket().getLocalSocketAddress()).getPort();
+    }
+
+    /**
+     * Accepts connections on the calling thread until the server is closed.
+     */
+    public void serve() {
+        logger.info("Serving " + objectStore.getRoot() + " to peers on port " + getPort());
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                connections.submit(() -> handle(channel));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                logger.error(e);
+            }
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        try (channel) {
+            ByteBuffer buffer = ByteBuffer.allocate(MAX_HEADER_BYTES);
+            while (true) {
+                String requestLine = readRequestHead(channel, buffer);
+                if (requestLine == null) {
+                    return;
+                }
+
+                String[] parts = requestLine.split(" ");
+                boolean head = parts[0].equals("HEAD");
+                if (parts.length < 2 || !(head || parts[0].equals("GET"))) {
+                    respond(channel, "405 Method Not Allowed", 0);
+                    continue;
+                }
+
+                Path objectPath = resolve(parts[1]);
+                if (objectPath == null) {
+                    respond(channel, "404 Not Found", 0);
+                    continue;
+                }
+
+                try (FileChannel file = FileChannel.open(objectPath, StandardOpenOption.READ)) {
+                    long size = file.size();
+                    respond(channel, "200 OK", size);
+                    if (!head) {
+                        long position = 0;
+                        while (position < size) {
+                            position += file.transferTo(position, size - position, channel);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // peer went away mid-request
+        }
+    }
+
+    /**
+     * Returns the stored file for a {@code /<sha1>} request path when the store holds an intact copy.
+     */
+    private Path resolve(String requestPath) {
+        String sha1 = requestPath.substring(requestPath.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+        if (sha1.length() != 40 || !sha1.chars().allMatch(HexFormat::isHexDigit)) {
+            return null;
+        }
+        Path objectPath = objectStore.pathOf(sha1);
+        return objectStore.contains(sha1) && DownloadManager.checkFileHash(objectPath, sha1) ? objectPath : null;
+    }
+
+    /**
+     * Reads one request head and returns its request line, or null once the peer closed the connection.
+     * Request bodies are not expected and anything after the blank line is kept for the next request.
+     */
+    private static String readRequestHead(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (true) {
+            int end = indexOfHeaderEnd(buffer);
+            if (end >= 0) {
+                String head = new String(buffer.array(), 0, end, StandardCharsets.ISO_8859_1);
+                buffer.flip().position(end + 4);
+                buffer.compact();
+                return head.substring(0, head.indexOf("\r\n") < 0 ? head.length() : head.indexOf("\r\n"));
+            }
+            if (!buffer.hasRemaining()) {
+                throw new IOException("Request head larger than " + MAX_HEADER_BYTES + " bytes");
+            }
+            if (channel.read(buffer) < 0) {
+                return null;
+            }
+        }
+    }
+
+    private static int indexOfHeaderEnd(ByteBuffer buffer) {
+        byte[] bytes = buffer.array();
+        for (int i = 0; i + 3 < buffer.position(); i++) {
+            if (bytes[i] == '\r' && bytes[i + 1] == '\n' && bytes[i + 2] == '\r' && bytes[i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void respond(SocketChannel channel, String status, long contentLength) throws IOException {
+        ByteBuffer head = StandardCharsets.ISO_8859_1.encode("HTTP/1.1 " + status + "\r\n"
+                + "Content-Length: " + contentLength + "\r\n"
+                + "Content-Type: application/octet-stream\r\n"
+                + "Connection: keep-alive\r\n\r\n");
+        while (head.hasRemaining()) {
+            channel.write(head);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverChannel.close();
+        connections.shutdownNow();
+    }
+
+}
@@ -0,0 +1,308 @@
+package network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+final class SegmentedDownload {
+
+    private static final long MIN_SEGMENT_SIZE = 2L * 1024 * 1024;
+
+    private final HttpClient httpClient;
+    private final URI uri;
+    private final long size;
+    private final AdaptiveLimiter hostLimit;
+    private final BandwidthLimiter bandwidthLimiter;
+    private final LongConsumer bytesListener;
+    private final Consumer<List<DownloadJournal.Range>> checkpointListener;
+
+    private final List<DownloadJournal.Range> written = new ArrayList<>();
+    private List<DownloadJournal.Range> segments = List.of();
+    private long[] durable = new long[0];
+    private volatile boolean rangesRejected = false;
+
+    SegmentedDownload(HttpClient httpClient, URI uri, long size, AdaptiveLimiter hostLimit, BandwidthLimiter bandwidthLimiter,
+                      LongConsumer bytesListener, Consumer<List<DownloadJournal.Range>> checkpointListener) {
+        this.httpClient = httpClient;
+        this.uri = uri;
+        this.size = size;
+        this.hostLimit = hostLimit;
+        this.bandwidthLimiter = bandwidthLimiter;
+        this.bytesListener = bytesListener;
+        this.checkpointListener = checkpointListener;
+    }
+
+    /**
+     * Fetches the file as {@code maxSegments} concurrent byte ranges written at their offsets in a
+     * preallocated part file, then hashes the assembled file once. Returns the hex SHA-1.
+     * <p>
+     * {@code firstBody} is the unread body of the 200 response that revealed the size; it supplies the first
+     * segment and is closed once that segment is written, so finding out the size costs no extra request.
+     * The host slot of that response, taken with a latency of {@code firstLatency}, is released with it.
+     */
+    String fetchInto(Path partPath, int maxSegments, InputStream firstBody, long firstLatency) throws IOException, InterruptedException {
+        return fetch(partPath, maxSegments, List.of(), firstBody, firstLatency, () -> {});
+    }
+
+    /**
+     * Continues a segmented transfer whose part file already holds the {@code written} ranges, requesting
+     * only the bytes in between. {@code onResponse} runs once, when the first range response arrives.
+     */
+    String resume(Path partPath, int maxSegments, List<DownloadJournal.Range> written, Runnable onResponse) throws IOException, InterruptedException {
+        return fetch(partPath, maxSegments, written, null, 0, onResponse);
+    }
+
+    /**
+     * Whether the server answered a range request with anything other than 206 or an overload status, in
+     * which case the written ranges can't be completed and the part file should start over.
+     */
+    boolean rangesRejected() {
+        return rangesRejected;
+    }
+
+    private String fetch(Path partPath, int maxSegments, List<DownloadJournal.Range> alreadyWritten, InputStream firstBody,
+                         long firstLatency, Runnable onResponse) throws IOException, InterruptedException {
+
+        written.addAll(alreadyWritten);
+        segments = missing(alreadyWritten, maxSegments);
+        durable = segments.stream().mapToLong(DownloadJournal.Range::first).toArray();
+        AtomicBoolean firstStarted = new AtomicBoolean(firstBody == null);
+        AtomicBoolean responded = new AtomicBoolean();
+        Runnable onFirstResponse = () -> {
+            if (responded.compareAndSet(false, true)) {
+                onResponse.run();
+            }
+        };
+
+        try (FileChannel fileChannel = FileChannel.open(partPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            if (fileChannel.size() > size) {
+                fileChannel.truncate(size);
+            } else if (fileChannel.size() < size) {
+                fileChannel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+            }
+
+            List<Future<Void>> futures = new ArrayList<>(segments.size());
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < segments.size(); i++) {
+                    int segment = i;
+                    futures.add(executor.submit(() -> {
+                        if (segments.get(segment).first() == 0 && firstStarted.compareAndSet(false, true)) {
+                            fetchFirst(firstBody, fileChannel, segment, firstLatency);
+                        } else {
+                            fetchRange(fileChannel, segment, onFirstResponse);
+                        }
+                        return null;
+                    }));
+                }
+
+                for (Future<Void> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        futures.forEach(f -> f.cancel(true));
+                        throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                    }
+                }
+            }
+
+            return hash(fileChannel);
+        } finally {
+            if (firstStarted.compareAndSet(false, true)) {
+                firstBody.close();
+                hostLimit.release();
+            }
+        }
+    }
+
+    /**
+     * Splits the bytes not yet {@code written} into at most about {@code maxSegments} ranges of at least
+     * {@link #MIN_SEGMENT_SIZE}, none spanning a written range.
+     */
+    private List<DownloadJournal.Range> missing(List<DownloadJournal.Range> written, int maxSegments) {
+        List<DownloadJournal.Range> gaps = new ArrayList<>();
+        long position = 0;
+        for (DownloadJournal.Range range : merge(written)) {
+            if (range.first() > position) {
+                gaps.add(new DownloadJournal.Range(position, range.first()));
+            }
+            position = Math.max(position, range.end());
+        }
+        if (position < size) {
+            gaps.add(new DownloadJournal.Range(position, size));
+        }
+
+        long remaining = gaps.stream().mapToLong(gap -> gap.end() - gap.first()).sum();
+        long count = Math.max(1, Math.min(maxSegments, remaining / MIN_SEGMENT_SIZE));
+        long segmentSize = Math.max(1, (remaining + count - 1) / count);
+
+        List<DownloadJournal.Range> missing = new ArrayList<>();
+        for (DownloadJournal.Range gap : gaps) {
+            for (long first = gap.first(); first < gap.end(); first += segmentSize) {
+                missing.add(new DownloadJournal.Range(first, Math.min(gap.end(), first + segmentSize)));
+            }
+        }
+        return missing;
+    }
+
+    static List<DownloadJournal.Range> merge(List<DownloadJournal.Range> ranges) {
+        List<DownloadJournal.Range> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(DownloadJournal.Range::first));
+
+        List<DownloadJournal.Range> merged = new ArrayList<>();
+        for (DownloadJournal.Range range : sorted) {
+            if (range.end() <= range.first()) {
+                continue;
+            }
+            DownloadJournal.Range last = merged.isEmpty() ? null : merged.getLast();
+            if (last != null && range.first() <= last.end()) {
+                merged.set(merged.size() - 1, new DownloadJournal.Range(last.first(), Math.max(last.end(), range.end())));
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Records that {@code segment} is on disk up to {@code position} and hands every range known to be
+     * written to the journal.
+     */
+    private synchronized void checkpoint(int segment, long position) {
+        durable[segment] = position;
+        List<DownloadJournal.Range> ranges = new ArrayList<>(written);
+        for (int i = 0; i < durable.length; i++) {
+            ranges.add(new DownloadJournal.Range(segments.get(i).first(), durable[i]));
+        }
+        checkpointListener.accept(merge(ranges));
+    }
+
+    private void fetchFirst(InputStream body, FileChannel fileChannel, int segment, long latency) throws IOException, InterruptedException {
+        boolean released = false;
+        try (body) {
+            copy(body, fileChannel, segment);
+            hostLimit.onSuccess(latency, segments.get(segment).end());
+            released = true;
+        } catch (IOException e) {
+            hostLimit.onFailure();
+            released = true;
+            throw e;
+        } finally {
+            if (!released) {
+                hostLimit.release();
+            }
+        }
+    }
+
+    private void fetchRange(FileChannel fileChannel, int segment, Runnable onResponse) throws IOException, InterruptedException {
+
+        long first = segments.get(segment).first();
+        long last = segments.get(segment).end() - 1;
+        HttpRequest request = HttpRequest.newBuilder(uri).header("Range", "bytes=" + first + "-" + last).GET().build();
+
+        hostLimit.acquire();
+        boolean released = false;
+        try {
+            long start = System.nanoTime();
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            long latency = System.nanoTime() - start;
+            onResponse.run();
+
+            try (InputStream body = response.body()) {
+                if (response.statusCode() != 206) {
+                    if (HttpDownloadEngine.isOverloaded(response.statusCode())) {
+                        hostLimit.onFailure();
+                    } else {
+                        rangesRejected = true;
+                        hostLimit.release();
+                    }
+                    released = true;
+                    throw new IOException("Server ignored range " + first + "-" + last + " for " + uri + " (HTTP " + response.statusCode() + ")");
+                }
+
+                copy(body, fileChannel, segment);
+                if (body.read() != -1) {
+                    throw new IOException("Server sent more than the requested range for " + uri);
+                }
+            }
+
+            hostLimit.onSuccess(latency, last - first + 1);
+            released = true;
+        } catch (IOException e) {
+            if (!released) {
+                hostLimit.onFailure();
+                released = true;
+            }
+            throw e;
+        } finally {
+            if (!released) {
+                hostLimit.release();
+            }
+        }
+    }
+
+    /**
+     * Writes {@code segment} of the file from {@code body}, reading no further than its end, and
+     * checkpoints it every {@link HttpDownloadEngine#CHECKPOINT_BYTES} and once it is complete.
+     */
+    private void copy(InputStream body, FileChannel fileChannel, int segment) throws IOException, InterruptedException {
+        long first = segments.get(segment).first();
+        long end = segments.get(segment).end();
+        long position = first;
+        long sinceCheckpoint = 0;
+        byte[] buffer = new byte[16384];
+        while (position < end) {
+            int read = body.read(buffer, 0, (int) Math.min(buffer.length, end - position));
+            if (read == -1) {
+                throw new IOException("Range " + first + "-" + (end - 1) + " of " + uri + " ended early at " + position);
+            }
+            bandwidthLimiter.acquire(read);
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+            while (byteBuffer.hasRemaining()) {
+                position += fileChannel.write(byteBuffer, position);
+            }
+            bytesListener.accept(read);
+
+            sinceCheckpoint += read;
+            if (sinceCheckpoint >= HttpDownloadEngine.CHECKPOINT_BYTES || position == end) {
+                fileChannel.force(false);
+                checkpoint(segment, position);
+                sinceCheckpoint = 0;
+            }
+        }
+    }
+
+    private String hash(FileChannel fileChannel) throws IOException {
+        MessageDigest messageDigest = HttpDownloadEngine.newSHA1();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(65536);
+        long position = 0;
+        int read;
+        while ((read = fileChannel.read(buffer, position)) != -1) {
+            position += read;
+            buffer.flip();
+            messageDigest.update(buffer);
+            buffer.clear();
+        }
+        return HexFormat.of().formatHex(messageDigest.digest());
+    }
+
+}
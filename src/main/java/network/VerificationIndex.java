@@ -0,0 +1,148 @@
+package network;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import logging.SimpleLogger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+public final class VerificationIndex {
+
+    record Entry(long size, long modified, String fileKey, String sha1) {}
+
+    private static final SimpleLogger logger = new SimpleLogger(true);
+    private static final Gson gson = new Gson();
+    private static final long FLUSH_INTERVAL_MILLIS = 2000;
+
+    private final Path indexPath;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty = false;
+    private volatile long lastFlush = System.currentTimeMillis();
+
+    public VerificationIndex(Path indexPath) {
+        this.indexPath = indexPath;
+        load();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush));
+    }
+
+    /**
+     * Returns true when {@code filePath} was verified against {@code sha1} before and its size, modification
+     * time and file key have not changed since, meaning it does not need to be hashed again. An entry whose
+     * file is gone or has changed is dropped.
+     */
+    public boolean isVerified(Path filePath, String sha1) {
+        Entry entry = entries.get(key(filePath));
+        if (entry == null || !entry.sha1().equalsIgnoreCase(sha1)) {
+            return false;
+        }
+        try {
+            return matches(filePath, entry, describe(filePath, entry.sha1()));
+        } catch (IOException e) {
+            drop(filePath, entry);
+            return false;
+        }
+    }
+
+    /**
+     * Same as {@link #isVerified(Path, String)} with attributes the caller already read.
+     */
+    public boolean isVerified(Path filePath, String sha1, BasicFileAttributes attributes) {
+        Entry entry = entries.get(key(filePath));
+        return entry != null && entry.sha1().equalsIgnoreCase(sha1) && matches(filePath, entry, describe(attributes, entry.sha1()));
+    }
+
+    private boolean matches(Path filePath, Entry entry, Entry current) {
+        if (entry.equals(current)) {
+            return true;
+        }
+        drop(filePath, entry);
+        return false;
+    }
+
+    private void drop(Path filePath, Entry entry) {
+        if (entries.remove(key(filePath), entry)) {
+            dirty = true;
+        }
+    }
+
+    public void record(Path filePath, String sha1) {
+        try {
+            entries.put(key(filePath), describe(filePath, sha1.toLowerCase(Locale.ROOT)));
+            dirty = true;
+        } catch (IOException e) {
+            logger.error(e);
+            return;
+        }
+        if (System.currentTimeMillis() - lastFlush >= FLUSH_INTERVAL_MILLIS) {
+            flush();
+        }
+    }
+
+    public void forget(Path filePath) {
+        if (entries.remove(key(filePath)) != null) {
+            dirty = true;
+        }
+    }
+
+    public synchronized void flush() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        lastFlush = System.currentTimeMillis();
+
+        Path tempPath = indexPath.resolveSibling(indexPath.getFileName() + ".part");
+        try {
+            Files.createDirectories(indexPath.toAbsolutePath().getParent());
+            try (Writer writer = Files.newBufferedWriter(tempPath)) {
+                gson.toJson(new HashMap<>(entries), writer);
+            }
+            DownloadManager.commitPartFile(tempPath, indexPath);
+        } catch (IOException e) {
+            dirty = true;
+            logger.error(e);
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(indexPath)) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(indexPath)) {
+            Map<String, Entry> stored = gson.fromJson(reader, new TypeToken<Map<String, Entry>>() {}.getType());
+            if (stored != null) {
+                entries.putAll(stored);
+            }
+            if (entries.keySet().removeIf(filePath -> !Files.exists(Path.of(filePath)))) {
+                dirty = true;
+            }
+        } catch (IOException | JsonSyntaxException e) {
+            logger.warn("Verification index " + indexPath + " is unreadable, files will be hashed again.");
+        }
+    }
+
+    private static Entry describe(Path filePath, String sha1) throws IOException {
+        return describe(Files.readAttributes(filePath, BasicFileAttributes.class), sha1);
+    }
+
+    private static Entry describe(BasicFileAttributes attributes, String sha1) {
+        return new Entry(attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                String.valueOf(attributes.fileKey()), sha1);
+    }
+
+    private static String key(Path filePath) {
+        return filePath.toAbsolutePath().normalize().toString();
+    }
+
+}
@@ -0,0 +1,136 @@
+package launcher;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArtifactCollectorTest {
+
+    private static final String USED_LIBRARY_SHA1 = "1111111111111111111111111111111111111111";
+    private static final String USED_OBJECT = "ab00000000000000000000000000000000000000";
+    private static final String UNUSED_OBJECT = "cd00000000000000000000000000000000000000";
+    private static final String ORPHAN_OBJECT = "ef00000000000000000000000000000000000000";
+
+    @TempDir
+    Path directory;
+
+    private Path versions;
+    private Path libraries;
+    private Path indexes;
+    private Path objects;
+    private Path store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        versions = directory.resolve("versions");
+        libraries = directory.resolve("libraries");
+        indexes = directory.resolve("assets/indexes");
+        objects = directory.resolve("assets/objects");
+        store = directory.resolve("store");
+
+        write(versions.resolve("1.0/1.0.json"), """
+                {"id": "1.0", "assets": "1", "libraries": [
+                  {"name": "used:used:1", "downloads": {"artifact": {"path": "used/used.jar", "sha1": "%s", "size": 100}}}
+                ]}""".formatted(USED_LIBRARY_SHA1));
+        write(indexes.resolve("1.json"), """
+                {"objects": {"icons/used.png": {"hash": "%s", "size": 200}}}""".formatted(USED_OBJECT));
+
+        old(write(libraries.resolve("used/used.jar"), 100));
+        old(write(libraries.resolve("unused/unused.jar"), 300));
+        old(write(libraries.resolve("unused/partial.jar.part"), 50));
+        write(libraries.resolve("unused/fresh.jar"), 70);
+
+        // every object in the game directory is a hard link into the store, as after a default install
+        old(write(store.resolve("ab/" + USED_OBJECT), 200));
+        old(write(store.resolve("cd/" + UNUSED_OBJECT), 400));
+        old(write(store.resolve("ef/" + ORPHAN_OBJECT), 500));
+        link(objects.resolve("ab/" + USED_OBJECT), store.resolve("ab/" + USED_OBJECT));
+        link(objects.resolve("cd/" + UNUSED_OBJECT), store.resolve("cd/" + UNUSED_OBJECT));
+    }
+
+    @Test
+    void keepsMarkedFilesAndFreesUnusedStoreObjects() throws IOException {
+        ArtifactCollector.Result result = ArtifactCollector.collect(versions, libraries, indexes, objects, store, false);
+
+        assertTrue(Files.exists(libraries.resolve("used/used.jar")));
+        assertTrue(Files.exists(objects.resolve("ab/" + USED_OBJECT)));
+        assertTrue(Files.exists(store.resolve("ab/" + USED_OBJECT)));
+        assertTrue(Files.exists(libraries.resolve("unused/partial.jar.part")));
+        assertTrue(Files.exists(libraries.resolve("unused/fresh.jar")));
+
+        assertFalse(Files.exists(libraries.resolve("unused/unused.jar")));
+        assertFalse(Files.exists(objects.resolve("cd/" + UNUSED_OBJECT)));
+        assertFalse(Files.exists(store.resolve("cd/" + UNUSED_OBJECT)));
+        assertFalse(Files.exists(store.resolve("ef/" + ORPHAN_OBJECT)));
+
+        // the unused object's bytes count once, when its store link goes
+        assertEquals(4, result.files());
+        assertEquals(300 + 400 + 500, result.bytes());
+    }
+
+    @Test
+    void dryRunReportsTheSameWithoutDeleting() throws IOException {
+        ArtifactCollector.Result result = ArtifactCollector.collect(versions, libraries, indexes, objects, store, true);
+
+        assertEquals(4, result.files());
+        assertEquals(300 + 400 + 500, result.bytes());
+        assertTrue(Files.exists(libraries.resolve("unused/unused.jar")));
+        assertTrue(Files.exists(objects.resolve("cd/" + UNUSED_OBJECT)));
+        assertTrue(Files.exists(store.resolve("ef/" + ORPHAN_OBJECT)));
+    }
+
+    @Test
+    void keepsStoreObjectsLinkedFromAnotherGameDirectory() throws IOException {
+        link(directory.resolve("other/assets/objects/cd/" + UNUSED_OBJECT), store.resolve("cd/" + UNUSED_OBJECT));
+
+        ArtifactCollector.Result result = ArtifactCollector.collect(versions, libraries, indexes, objects, store, false);
+
+        assertFalse(Files.exists(objects.resolve("cd/" + UNUSED_OBJECT)));
+        assertTrue(Files.exists(store.resolve("cd/" + UNUSED_OBJECT)));
+        assertEquals(3, result.files());
+        assertEquals(300 + 500, result.bytes());
+    }
+
+    @Test
+    void marksLibrariesOfEveryInstalledVersion() throws IOException {
+        write(versions.resolve("2.0/2.0.json"), """
+                {"id": "2.0", "libraries": [
+                  {"name": "unused:unused:1", "downloads": {"artifact": {"path": "unused/unused.jar", "size": 300}}}
+                ]}""");
+
+        ArtifactCollector.collect(versions, libraries, indexes, objects, store, false);
+
+        assertTrue(Files.exists(libraries.resolve("unused/unused.jar")));
+    }
+
+    private static Path write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, content);
+    }
+
+    private static Path write(Path file, int size) throws IOException {
+        Files.createDirectories(file.getParent());
+        return Files.write(file, new byte[size]);
+    }
+
+    private static void old(Path file) throws IOException {
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+    }
+
+    private static void link(Path link, Path existing) throws IOException {
+        Files.createDirectories(link.getParent());
+        Files.createLink(link, existing);
+    }
+
+}
@@ -0,0 +1,137 @@
+package launcher;
+
+import com.sun.net.httpserver.HttpServer;
+import network.DownloadManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AssetIndexReaderTest {
+
+    private static final int OBJECTS = 3;
+
+    @TempDir
+    Path directory;
+
+    private final ExecutorService handlers = Executors.newCachedThreadPool();
+    private final ExecutorService producers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, byte[]> served = new ConcurrentHashMap<>();
+    private final List<String> hashes = new ArrayList<>();
+    private HttpServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = served.get(exchange.getRequestURI().getPath());
+            exchange.sendResponseHeaders(body == null ? 404 : 200, body == null ? -1 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                if (body != null) {
+                    out.write(body);
+                }
+            }
+        });
+        server.setExecutor(handlers);
+        server.start();
+        DownloadManager.setObjectStore(null);
+
+        for (int i = 0; i < OBJECTS; i++) {
+            byte[] content = ("asset " + i).getBytes(StandardCharsets.UTF_8);
+            String hash = sha1(content);
+            served.put("/" + hash.substring(0, 2) + "/" + hash, content);
+            hashes.add(hash);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        handlers.shutdown();
+        producers.shutdown();
+    }
+
+    @Test
+    void downloadsEveryObjectOfCompleteIndex() throws Exception {
+        Path index = writeIndex(false);
+        Path objects = directory.resolve("objects");
+
+        assertTrue(download(index, objects));
+        for (String hash : hashes) {
+            assertArrayEquals(served.get("/" + hash.substring(0, 2) + "/" + hash), Files.readAllBytes(objects.resolve(hash.substring(0, 2)).resolve(hash)));
+        }
+    }
+
+    /**
+     * The index breaks off after its last complete object, as a truncated download would leave it. The
+     * objects read before that are still fetched, and the install fails instead of waiting for more.
+     */
+    @Test
+    void failsWhenIndexBreaksOffPartway() throws Exception {
+        Path index = writeIndex(true);
+        Path objects = directory.resolve("objects");
+
+        BlockingQueue<Map.Entry<URI, String>> queue = new ArrayBlockingQueue<>(1);
+        CompletableFuture<Void> parser = AssetIndexReader.feed(index, base(), queue, producers);
+
+        assertFalse(CompletableFuture.supplyAsync(() -> DownloadManager.downloadQueue(queue, parser, objects, true), producers)
+                .get(30, TimeUnit.SECONDS));
+        assertTrue(parser.isCompletedExceptionally());
+        assertEquals(0, queue.size());
+        for (String hash : hashes) {
+            assertTrue(Files.exists(objects.resolve(hash.substring(0, 2)).resolve(hash)), hash);
+        }
+    }
+
+    private boolean download(Path index, Path objects) throws Exception {
+        BlockingQueue<Map.Entry<URI, String>> queue = new ArrayBlockingQueue<>(1);
+        CompletableFuture<Void> parser = AssetIndexReader.feed(index, base(), queue, producers);
+        return CompletableFuture.supplyAsync(() -> DownloadManager.downloadQueue(queue, parser, objects, true), producers)
+                .get(30, TimeUnit.SECONDS);
+    }
+
+    private Path writeIndex(boolean truncated) throws IOException {
+        StringBuilder json = new StringBuilder("{\"objects\": {");
+        for (int i = 0; i < hashes.size(); i++) {
+            json.append(i > 0 ? ", " : "").append("\"asset/").append(i).append("\": {\"hash\": \"").append(hashes.get(i)).append("\", \"size\": 7}");
+        }
+        json.append(truncated ? ", \"asset/broken\": {\"hash\": \"" : "}}");
+        return Files.writeString(directory.resolve(truncated ? "truncated.json" : "index.json"), json);
+    }
+
+    private String base() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+    }
+
+    private static String sha1(byte[] content) throws NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(content));
+    }
+
+}
@@ -0,0 +1,90 @@
+package network;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AdaptiveLimiterTest {
+
+    private static final byte[] CONTENT = "limited payload".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path directory;
+
+    private FileServer server;
+    private HttpDownloadEngine engine;
+    private URI uri;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new FileServer();
+        engine = new HttpDownloadEngine(8, directory.resolve("journal.json"), new DownloadMetrics());
+        uri = server.put("/file", CONTENT);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void halvesHostLimitOnTooManyRequests() throws Exception {
+        download();
+        server.statuses.add(429);
+
+        assertThrows(IOException.class, this::download);
+        assertEquals(4, hostLimit().getLimit());
+        assertEquals(0, hostLimit().getInFlight());
+    }
+
+    @Test
+    void halvesHostLimitOnEveryServerError() throws Exception {
+        download();
+        server.statuses.add(503);
+        server.statuses.add(500);
+
+        assertThrows(IOException.class, this::download);
+        assertThrows(IOException.class, this::download);
+        assertEquals(2, hostLimit().getLimit());
+        assertEquals(0, hostLimit().getInFlight());
+    }
+
+    @Test
+    void keepsHostLimitOnClientError() throws Exception {
+        download();
+        server.statuses.add(404);
+
+        assertThrows(IOException.class, this::download);
+        assertEquals(8, hostLimit().getLimit());
+        assertEquals(0, hostLimit().getInFlight());
+    }
+
+    @Test
+    void neverBacksOffBelowMinimum() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(4, 1, 8);
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire();
+            limiter.onFailure();
+        }
+        assertEquals(1, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    private void download() throws IOException, InterruptedException {
+        engine.download(uri, HttpDownloadEngineTest.sha1(CONTENT), directory.resolve("file"));
+    }
+
+    private AdaptiveLimiter hostLimit() {
+        return engine.getHostLimits().get(HttpDownloadEngine.hostOf(uri));
+    }
+
+}
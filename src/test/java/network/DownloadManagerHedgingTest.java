@@ -0,0 +1,116 @@
+package network;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownloadManagerHedgingTest {
+
+    private static final byte[] CONTENT = "hedged payload".getBytes(StandardCharsets.UTF_8);
+    private static final int WARM_UP_FILES = 40;
+    private static final long STALL_SECONDS = 10;
+
+    @TempDir
+    Path directory;
+
+    private final ExecutorService handlers = Executors.newVirtualThreadPerTaskExecutor();
+    private final CountDownLatch unstall = new CountDownLatch(1);
+    private final AtomicBoolean stalled = new AtomicBoolean();
+    private HttpServer canonical;
+    private HttpServer mirror;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        canonical = server();
+        mirror = server();
+        DownloadManager.setObjectStore(null);
+        DownloadManager.setMirrors(base(canonical), List.of(base(mirror)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        unstall.countDown();
+        canonical.stop(0);
+        mirror.stop(0);
+        handlers.shutdown();
+    }
+
+    /**
+     * Whichever server gets the first request for the file stalls before answering, so the download only
+     * finishes in time when a hedge to the other server takes over.
+     */
+    @Test
+    void hedgeToOtherServerWinsWhenPrimaryStalls() throws Exception {
+        String sha1 = HttpDownloadEngineTest.sha1(CONTENT);
+        for (int i = 0; i < WARM_UP_FILES; i++) {
+            assertTrue(DownloadManager.downloadFileTo(URI.create(base(canonical) + "warm/" + i), sha1, directory.resolve("warm-" + i)).join());
+        }
+
+        Path target = directory.resolve("file");
+        long hedgesBefore = hedges();
+        long start = System.nanoTime();
+
+        assertTrue(DownloadManager.downloadFileTo(URI.create(base(canonical) + "file"), sha1, target).get(STALL_SECONDS / 2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(STALL_SECONDS / 2));
+        assertTrue(stalled.get());
+        assertEquals(hedgesBefore + 1, hedges());
+        assertArrayEquals(CONTENT, Files.readAllBytes(target));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((Files.exists(directory.resolve("file.part")) || Files.exists(directory.resolve("file.hedge.part"))) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse(Files.exists(directory.resolve("file.part")));
+        assertFalse(Files.exists(directory.resolve("file.hedge.part")));
+    }
+
+    private HttpServer server() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/warm/", exchange -> HttpDownloadEngineTest.respond(exchange, 200, CONTENT));
+        server.createContext("/file", exchange -> {
+            if (stalled.compareAndSet(false, true)) {
+                try {
+                    unstall.await(STALL_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            HttpDownloadEngineTest.respond(exchange, 200, CONTENT);
+        });
+        server.setExecutor(handlers);
+        server.start();
+        return server;
+    }
+
+    private static String base(HttpServer server) {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+    }
+
+    private static long hedges() {
+        return DownloadManager.getMetrics().report("test", true, Map.of()).hosts().values().stream()
+                .mapToLong(DownloadMetrics.HostSnapshot::hedges).sum();
+    }
+
+}
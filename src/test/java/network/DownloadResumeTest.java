@@ -0,0 +1,123 @@
+package network;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cuts every response off partway, then downloads again with a new engine reading the same journal, as a
+ * restarted launcher would.
+ */
+class DownloadResumeTest {
+
+    private static final int MiB = 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    private FileServer server;
+    private Path journal;
+    private Path target;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new FileServer();
+        journal = directory.resolve("journal.json");
+        target = directory.resolve("client.jar");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void resumesSequentialDownloadFromJournaledOffset() throws Exception {
+        byte[] content = content(4 * MiB);
+        URI uri = server.put("/client.jar", content);
+        String sha1 = HttpDownloadEngineTest.sha1(content);
+
+        server.cutAfter = 3L * MiB;
+        assertThrows(IOException.class, () -> engine(new DownloadMetrics()).download(uri, sha1, target));
+        assertTrue(Files.exists(directory.resolve("client.jar.part")));
+
+        server.cutAfter = -1;
+        server.ranges.clear();
+        DownloadMetrics metrics = new DownloadMetrics();
+        assertEquals(HttpDownloadEngine.Result.DOWNLOADED, engine(metrics).download(uri, sha1, target));
+        assertArrayEquals(content, Files.readAllBytes(target));
+
+        assertEquals(1, server.ranges.size());
+        long offset = Long.parseLong(server.ranges.getFirst().replaceAll("bytes=(\\d+)-", "$1"));
+        assertTrue(offset >= 2L * MiB, "resumed from " + offset);
+        assertEquals(content.length - offset, metrics.report("test", true, Map.of()).bytes());
+    }
+
+    @Test
+    void resumesSegmentedDownloadWithMissingRangesOnly() throws Exception {
+        byte[] content = content(20 * MiB);
+        URI uri = server.put("/client.jar", content);
+        String sha1 = HttpDownloadEngineTest.sha1(content);
+
+        // each of the six segments gets 3 MiB, so at least 2 MiB of each is checkpointed
+        server.cutAfter = 3L * MiB;
+        assertThrows(IOException.class, () -> engine(new DownloadMetrics()).download(uri, sha1, target));
+        assertTrue(Files.exists(directory.resolve("client.jar.part")));
+
+        server.cutAfter = -1;
+        server.ranges.clear();
+        DownloadMetrics metrics = new DownloadMetrics();
+        assertEquals(HttpDownloadEngine.Result.DOWNLOADED, engine(metrics).download(uri, sha1, target));
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertFalse(Files.exists(directory.resolve("client.jar.part")));
+
+        List<String> ranges = List.copyOf(server.ranges);
+        assertFalse(ranges.isEmpty());
+        assertTrue(ranges.stream().allMatch(range -> range.startsWith("bytes=") && !range.startsWith("bytes=0-")), ranges.toString());
+        long fetched = metrics.report("test", true, Map.of()).bytes();
+        assertTrue(fetched <= content.length - 6L * 2 * MiB, "fetched " + fetched + " bytes again");
+    }
+
+    @Test
+    void startsOverWhenServerStopsHonouringRanges() throws Exception {
+        byte[] content = content(20 * MiB);
+        URI uri = server.put("/client.jar", content);
+        String sha1 = HttpDownloadEngineTest.sha1(content);
+
+        server.cutAfter = 3L * MiB;
+        assertThrows(IOException.class, () -> engine(new DownloadMetrics()).download(uri, sha1, target));
+
+        server.cutAfter = -1;
+        server.acceptRanges = false;
+        assertThrows(IOException.class, () -> engine(new DownloadMetrics()).download(uri, sha1, target));
+
+        assertEquals(HttpDownloadEngine.Result.DOWNLOADED, engine(new DownloadMetrics()).download(uri, sha1, target));
+        assertArrayEquals(content, Files.readAllBytes(target));
+    }
+
+    private HttpDownloadEngine engine(DownloadMetrics metrics) {
+        return new HttpDownloadEngine(8, journal, metrics);
+    }
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        new SplittableRandom(size).nextBytes(content);
+        return content;
+    }
+
+}
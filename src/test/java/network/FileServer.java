@@ -0,0 +1,97 @@
+package network;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves byte arrays from memory over HTTP/1.1 for tests, with optional {@code Range} support, scripted
+ * error statuses and responses cut off after a number of bytes. Every request's {@code Range} header, or
+ * {@code "-"} without one, is recorded.
+ */
+final class FileServer implements AutoCloseable {
+
+    private final HttpServer server;
+    // platform threads: a handler blocked writing a large body would otherwise pin the carrier the client's
+    // virtual threads need on a single-CPU machine
+    private final ExecutorService handlers = Executors.newCachedThreadPool();
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+
+    final List<String> ranges = new CopyOnWriteArrayList<>();
+    final Queue<Integer> statuses = new ConcurrentLinkedQueue<>();
+    volatile boolean acceptRanges = true;
+    volatile long cutAfter = -1;
+
+    FileServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    URI put(String path, byte[] content) {
+        files.put(path, content);
+        return uri(path);
+    }
+
+    URI uri(String path) {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            ranges.add(range == null ? "-" : range);
+
+            Integer status = statuses.poll();
+            byte[] content = files.get(exchange.getRequestURI().getPath());
+            if (status != null || content == null) {
+                exchange.sendResponseHeaders(status != null ? status : 404, -1);
+                return;
+            }
+
+            long first = 0;
+            long last = content.length - 1;
+            if (acceptRanges) {
+                exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            }
+            if (acceptRanges && range != null && range.startsWith("bytes=")) {
+                String[] bounds = range.substring("bytes=".length()).split("-", -1);
+                first = Long.parseLong(bounds[0]);
+                last = bounds[1].isEmpty() ? last : Math.min(last, Long.parseLong(bounds[1]));
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + first + "-" + last + "/" + content.length);
+                exchange.sendResponseHeaders(206, last - first + 1);
+            } else {
+                exchange.sendResponseHeaders(200, content.length);
+            }
+
+            long length = last - first + 1;
+            long cut = cutAfter;
+            // closing a fixed-length body short of its length throws, and the exception escaping the handler
+            // makes the server drop the connection, like a network failure
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(content, (int) first, (int) (cut >= 0 ? Math.min(cut, length) : length));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdown();
+    }
+
+}
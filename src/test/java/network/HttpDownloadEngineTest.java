@@ -0,0 +1,92 @@
+package network;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HttpDownloadEngineTest {
+
+    private static final byte[] CONTENT = "hclilauncher test payload".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path directory;
+
+    private HttpServer server;
+    private HttpDownloadEngine engine;
+    private Path target;
+    private Path part;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/file", exchange -> respond(exchange, 200, CONTENT));
+        server.createContext("/error", exchange -> respond(exchange, 500, new byte[0]));
+        server.start();
+
+        engine = new HttpDownloadEngine(4, directory.resolve("journal.json"), new DownloadMetrics());
+        target = directory.resolve("file");
+        part = directory.resolve("file.part");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void commitsVerifiedFile() throws Exception {
+        assertEquals(HttpDownloadEngine.Result.DOWNLOADED, engine.download(uri("/file"), sha1(CONTENT), target));
+        assertArrayEquals(CONTENT, Files.readAllBytes(target));
+        assertFalse(Files.exists(part));
+    }
+
+    @Test
+    void discardsFileWithWrongHash() throws Exception {
+        String wrongSHA1 = sha1("something else".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(HttpDownloadEngine.Result.HASH_MISMATCH, engine.download(uri("/file"), wrongSHA1, target));
+        assertFalse(Files.exists(target));
+        assertFalse(Files.exists(part));
+    }
+
+    @Test
+    void failsOnServerError() {
+        assertThrows(IOException.class, () -> engine.download(uri("/error"), sha1(CONTENT), target));
+        assertFalse(Files.exists(target));
+        assertFalse(Files.exists(part));
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path);
+    }
+
+    static String sha1(byte[] content) {
+        return HexFormat.of().formatHex(HttpDownloadEngine.newSHA1().digest(content));
+    }
+
+    static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+}
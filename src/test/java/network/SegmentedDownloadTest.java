@@ -0,0 +1,80 @@
+package network;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class SegmentedDownloadTest {
+
+    private static final int SIZE = 20 * 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    private final byte[] content = new byte[SIZE];
+    private FileServer server;
+    private DownloadMetrics metrics;
+    private HttpDownloadEngine engine;
+    private Path target;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        new SplittableRandom(7).nextBytes(content);
+        server = new FileServer();
+        metrics = new DownloadMetrics();
+        engine = new HttpDownloadEngine(8, directory.resolve("journal.json"), metrics);
+        target = directory.resolve("client.jar");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void assemblesSegmentsIntoVerifiedFile() throws Exception {
+        URI uri = server.put("/client.jar", content);
+
+        assertEquals(HttpDownloadEngine.Result.DOWNLOADED, engine.download(uri, HttpDownloadEngineTest.sha1(content), target));
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertFalse(Files.exists(directory.resolve("client.jar.part")));
+
+        // the body of the first, unranged response is kept as the first of six segments
+        assertEquals(1, server.ranges.stream().filter("-"::equals).count());
+        assertEquals(5, server.ranges.stream().filter(range -> range.startsWith("bytes=")).count());
+        assertEquals(SIZE, metrics.report("test", true, Map.of()).bytes());
+    }
+
+    @Test
+    void discardsSegmentedFileWithWrongHash() throws Exception {
+        URI uri = server.put("/client.jar", content);
+
+        assertEquals(HttpDownloadEngine.Result.HASH_MISMATCH, engine.download(uri, HttpDownloadEngineTest.sha1(new byte[1]), target));
+        assertFalse(Files.exists(target));
+        assertFalse(Files.exists(directory.resolve("client.jar.part")));
+    }
+
+    @Test
+    void streamsWhenServerDoesNotAcceptRanges() throws Exception {
+        server.acceptRanges = false;
+        URI uri = server.put("/client.jar", content);
+
+        assertEquals(HttpDownloadEngine.Result.DOWNLOADED, engine.download(uri, HttpDownloadEngineTest.sha1(content), target));
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(List.of("-"), server.ranges);
+    }
+
+}